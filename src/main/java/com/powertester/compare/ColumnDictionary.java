@@ -0,0 +1,56 @@
+package com.powertester.compare;
+
+import java.util.HashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dictionary of the distinct values of one column, for one fetch. While fetching, every value is
+ * replaced by the one instance kept in the dictionary, so 'Male' is stored once, not once per row.
+ * This only saves heap on rows that are kept (a result list, or the in-memory rows of a row store):
+ * the driver or parser has already allocated the value, and the expected and actual side of a
+ * compare are encoded by different dictionaries, so it does not make compares any faster.
+ *
+ * <p>The dictionary is adaptive: once a column turns out to have more than maxDistinctValues distinct
+ * values, it is not a low cardinality column, so the dictionary switches itself off and is emptied.
+ *
+ * <p>Not thread safe: a fetch reads its rows on one thread.
+ */
+@Slf4j
+public class ColumnDictionary {
+  private final String columnName;
+  private final int maxDistinctValues;
+  private final Map<String, String> values = new HashMap<>();
+  private boolean enabled = true;
+
+  ColumnDictionary(String columnName, int maxDistinctValues) {
+    this.columnName = columnName;
+    this.maxDistinctValues = maxDistinctValues;
+  }
+
+  /** Returns the dictionary instance of the value (or the value itself, if the column is not encoded). */
+  public String encode(String value) {
+    if (value == null || !enabled) return value;
+
+    String instance = values.get(value);
+    if (instance != null) return instance;
+
+    if (values.size() >= maxDistinctValues) {
+      disable();
+      return value;
+    }
+    values.put(value, value);
+    return value;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  private void disable() {
+    enabled = false;
+    values.clear();
+    log.debug("Column {} has more than {} distinct values. Dictionary encoding is switched off for it.",
+        columnName, maxDistinctValues);
+  }
+}
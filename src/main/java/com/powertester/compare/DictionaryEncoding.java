@@ -0,0 +1,38 @@
+package com.powertester.compare;
+
+import com.powertester.config.TestConfig;
+import com.typesafe.config.Config;
+
+/**
+ * Creates the {@link ColumnDictionary} instances of one fetch that keeps its rows (a query or a CSV
+ * file, into a list or a row store). A cursor keeps no rows, so it is not encoded. Each fetch gets
+ * dictionaries of its own, so a column that has many distinct values in one table doesn't switch
+ * encoding off for a column of the same name in another table.
+ */
+public class DictionaryEncoding {
+  private static final Config CONFIG = TestConfig.getInstance().getConfig();
+  private static final boolean ENABLED = CONFIG.getBoolean("DICTIONARY_ENCODING_ENABLED");
+  private static final int MAX_DISTINCT_VALUES = CONFIG.getInt("DICTIONARY_MAX_DISTINCT_VALUES");
+
+  private DictionaryEncoding() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /** Dictionary to encode the values of this column with, for one fetch (null if encoding is switched off). */
+  public static ColumnDictionary forColumn(String columnName) {
+    return ENABLED ? new ColumnDictionary(columnName, MAX_DISTINCT_VALUES) : null;
+  }
+
+  // Dictionaries for an array of columns (entries are null when encoding is switched off)
+  public static ColumnDictionary[] forColumns(String[] columnNames) {
+    ColumnDictionary[] dictionaries = new ColumnDictionary[columnNames.length];
+    for (int i = 0; i < columnNames.length; i++) {
+      dictionaries[i] = forColumn(columnNames[i]);
+    }
+    return dictionaries;
+  }
+
+  public static String encode(ColumnDictionary dictionary, String value) {
+    return dictionary == null ? value : dictionary.encode(value);
+  }
+}
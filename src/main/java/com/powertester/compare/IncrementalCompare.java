@@ -0,0 +1,106 @@
+package com.powertester.compare;
+
+import com.powertester.config.TestConfig;
+import java.nio.file.Path;
+
+/**
+ * Compares only rows changed since the last verified run, based on a watermark column (for example,
+ * a modification timestamp or a sequence). The compare window is (last verified watermark, upper
+ * watermark], where the upper watermark is the highest value seen by the first query of this compare
+ * (see DBConnection.queryIncremental). Both sides are fetched with the same window, and the upper
+ * watermark is persisted only after the compare found no differences.
+ *
+ * <p>A full compare happens when no watermark was stored yet, with {@link #forceFull()}, or for the
+ * whole run with -DFORCE_FULL_COMPARE=true.
+ */
+public class IncrementalCompare {
+  private final String compareName;
+  private final String watermarkColumn;
+  private final Path stateFile;
+  private final String fromWatermark; // null for a full compare
+  private String upperWatermark;
+  private boolean upperWatermarkResolved;
+
+  private IncrementalCompare(String compareName, String watermarkColumn, Path stateFile, String fromWatermark) {
+    this.compareName = compareName;
+    this.watermarkColumn = watermarkColumn;
+    this.stateFile = stateFile;
+    this.fromWatermark = fromWatermark;
+  }
+
+  /**
+   * @param compareName unique name of this compare, for example "emp-vs-customer"
+   * @param watermarkColumn column that only increases for new or changed rows
+   */
+  public static IncrementalCompare of(String compareName, String watermarkColumn) {
+    return of(compareName, watermarkColumn, WatermarkStore.DEFAULT_STATE_FILE);
+  }
+
+  /** Overload that keeps the watermark in a state file of its own, instead of WATERMARK_STATE_FILE. */
+  public static IncrementalCompare of(String compareName, String watermarkColumn, Path stateFile) {
+    boolean forceFullCompare = TestConfig.getInstance().getConfig().getBoolean("FORCE_FULL_COMPARE");
+    String fromWatermark =
+        forceFullCompare ? null : WatermarkStore.get(stateFile, stateKey(compareName, watermarkColumn));
+    return new IncrementalCompare(compareName, watermarkColumn, stateFile, fromWatermark);
+  }
+
+  /** Same compare, but ignore the stored watermark and compare all rows. */
+  public IncrementalCompare forceFull() {
+    return new IncrementalCompare(compareName, watermarkColumn, stateFile, null);
+  }
+
+  public String getCompareName() {
+    return compareName;
+  }
+
+  public String getWatermarkColumn() {
+    return watermarkColumn;
+  }
+
+  public boolean isFullCompare() {
+    return fromWatermark == null;
+  }
+
+  /** Rows with a watermark above this value are compared (null for a full compare). */
+  public String getFromWatermark() {
+    return fromWatermark;
+  }
+
+  public synchronized String getUpperWatermark() {
+    return upperWatermark;
+  }
+
+  public synchronized boolean isUpperWatermarkResolved() {
+    return upperWatermarkResolved;
+  }
+
+  /**
+   * Fixes the upper end of the compare window. Only the first call counts, so that rows arriving
+   * between the source and the target query do not end up in one side only.
+   */
+  public synchronized String resolveUpperWatermark(String highestWatermark) {
+    if (!upperWatermarkResolved) {
+      upperWatermark = highestWatermark;
+      upperWatermarkResolved = true;
+    }
+    return upperWatermark;
+  }
+
+  /** Persists the upper watermark, so that the next run starts from here. Call only after a passing compare. */
+  public void markVerified() {
+    String verifiedWatermark = getUpperWatermark();
+    if (verifiedWatermark != null) {
+      WatermarkStore.put(stateFile, stateKey(compareName, watermarkColumn), verifiedWatermark);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s on %s, window (%s, %s]", compareName, watermarkColumn,
+        isFullCompare() ? "-" : fromWatermark, getUpperWatermark());
+  }
+
+  private static String stateKey(String compareName, String watermarkColumn) {
+    return compareName + "." + watermarkColumn;
+  }
+}
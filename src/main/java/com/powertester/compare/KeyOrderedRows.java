@@ -0,0 +1,69 @@
+package com.powertester.compare;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * One side of a keyed compare: rows (values in the order of {@link #getColumns()}) that can be read
+ * in key order ({@link SpillingRowStore#KEY_ORDER}), for example a {@link SpillingRowStore} or a key
+ * ordered database cursor. Closed after the compare.
+ */
+public interface KeyOrderedRows extends Closeable {
+  List<String> getColumns();
+
+  String getKeyColumn();
+
+  int getKeyIndex();
+
+  Iterator<String[]> sortedIterator();
+
+  /**
+   * The rows in key order, failing on a key that is on more than one row. A keyed compare pairs rows
+   * on their key, and rows of the same key come in no fixed order (across spilled runs, not even the
+   * same order twice), so they can't be paired reliably.
+   */
+  default Iterator<String[]> uniqueKeyIterator() {
+    Iterator<String[]> rows = sortedIterator();
+    int keyIndex = getKeyIndex();
+    return new Iterator<>() {
+      private String[] previous;
+
+      @Override
+      public boolean hasNext() {
+        return rows.hasNext();
+      }
+
+      @Override
+      public String[] next() {
+        if (!rows.hasNext()) throw new NoSuchElementException();
+        String[] row = rows.next();
+        if (previous != null && SpillingRowStore.KEY_ORDER.compare(previous[keyIndex], row[keyIndex]) == 0) {
+          throw new IllegalStateException("Key " + getKeyColumn() + " = " + row[keyIndex] + " is on more than one"
+              + " row. A keyed compare needs a unique key column.");
+        }
+        previous = row;
+        return row;
+      }
+    };
+  }
+
+  /**
+   * Position of the key column in the columns, matched case insensitive (as the columns of a
+   * projection are), so a key ID is found in the header of a CSV file and in the columns of a query
+   * alike. Returns -1 if it is not there.
+   */
+  static int indexOfKey(List<String> columns, String keyColumn) {
+    for (int i = 0; i < columns.size(); i++) {
+      if (columns.get(i).equalsIgnoreCase(keyColumn)) return i;
+    }
+    return -1;
+  }
+
+  /** Stops work still running to produce rows, when the compare stops before the last row. Before close. */
+  default void cancel() {}
+
+  @Override
+  void close();
+}
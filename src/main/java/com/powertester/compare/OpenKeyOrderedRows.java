@@ -0,0 +1,37 @@
+package com.powertester.compare;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Key ordered rows (spilling row stores, database cursors) that were opened on the current thread and
+ * are not closed yet. A test that fails before its compare never hands its rows to the compare, which
+ * would close them, so they are closed after the test instead (see TableCompareExtension).
+ */
+public final class OpenKeyOrderedRows {
+  private static final ThreadLocal<Set<KeyOrderedRows>> OPEN =
+      ThreadLocal.withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<>()));
+
+  private OpenKeyOrderedRows() {}
+
+  public static void opened(KeyOrderedRows rows) {
+    OPEN.get().add(rows);
+  }
+
+  public static void closed(KeyOrderedRows rows) {
+    OPEN.get().remove(rows);
+  }
+
+  /** Closes the rows that are still open on this thread. Returns how many there were. */
+  public static int closeAll() {
+    List<KeyOrderedRows> open = new ArrayList<>(OPEN.get());
+    for (KeyOrderedRows rows : open) {
+      rows.close();
+    }
+    OPEN.remove();
+    return open.size();
+  }
+}
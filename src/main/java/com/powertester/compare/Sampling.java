@@ -0,0 +1,125 @@
+package com.powertester.compare;
+
+import com.powertester.config.TestConfig;
+import com.typesafe.config.Config;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deterministic, hash based sample of keys for smoke level compares of very large tables. A key is
+ * in the sample when hash(key, seed) falls in the first {@code fraction} of the hash buckets, so the
+ * same fraction and seed always select the same keys on both sides, and a failure can be reproduced
+ * by re-running with the seed from the report.
+ *
+ * <p>Database side sampling uses ORA_HASH (Oracle and H2), so unsampled rows never leave the
+ * database. Use {@link #clientSide()} when the other side of the compare is not a database (for
+ * example, an expected CSV file), so that both sides use the same (Java) hash.
+ */
+public class Sampling {
+  private static final long BUCKETS = 1_000_000L;
+  // z value for a one sided 95% confidence bound
+  private static final double Z_95 = 1.645;
+
+  private final double fraction;
+  private final long seed;
+  private final boolean databaseSide;
+
+  private Sampling(double fraction, long seed, boolean databaseSide) {
+    if (!(fraction > 0 && fraction <= 1)) {
+      throw new IllegalArgumentException("Sample fraction should be in (0, 1], but was: " + fraction);
+    }
+    this.fraction = fraction;
+    // ORA_HASH accepts seeds from 0 to 4294967295
+    this.seed = seed & 0xFFFFFFFFL;
+    this.databaseSide = databaseSide;
+  }
+
+  public static Sampling of(double fraction, long seed) {
+    return new Sampling(fraction, seed, true);
+  }
+
+  /** Sample fraction and seed from config (SAMPLE_FRACTION, SAMPLE_SEED). Override with -DSAMPLE_SEED=... */
+  public static Sampling fromConfig() {
+    Config config = TestConfig.getInstance().getConfig();
+    return of(config.getDouble("SAMPLE_FRACTION"), config.getLong("SAMPLE_SEED"));
+  }
+
+  /** Same sample definition, but always evaluated in Java (after fetching the key). */
+  public Sampling clientSide() {
+    return new Sampling(fraction, seed, false);
+  }
+
+  public double getFraction() {
+    return fraction;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public boolean isDatabaseSide() {
+    return databaseSide;
+  }
+
+  /** SQL predicate that is true for keys in the sample (for databases that support ORA_HASH). */
+  public String sqlPredicate(String keyColumn) {
+    return String.format("ORA_HASH(%s, %d, %d) < %d", keyColumn, BUCKETS - 1, seed, threshold());
+  }
+
+  /** Java equivalent of {@link #sqlPredicate(String)}. Keys are hashed by their text value. */
+  public boolean includes(Object key) {
+    if (key == null) return false;
+    return Math.floorMod(hash(key.toString()), BUCKETS) < threshold();
+  }
+
+  /** Keeps only the rows whose key is in the sample (for example, rows read from an expected CSV file). */
+  public <M extends Map<String, ?>> List<M> filter(List<M> rows, String keyColumn) {
+    List<M> sampledRows = new ArrayList<>();
+    for (M row : rows) {
+      if (includes(row.get(keyColumn))) {
+        sampledRows.add(row);
+      }
+    }
+    return sampledRows;
+  }
+
+  /**
+   * One sided 95% upper confidence bound (Wilson score) of the mismatch rate of the whole table,
+   * given the mismatches observed in the sample. With 0 mismatches in 3000 sampled rows, the true
+   * mismatch rate is below 0.09% with 95% confidence.
+   */
+  public static double upperConfidenceBound(long mismatches, long sampleSize) {
+    if (sampleSize == 0) return 1.0;
+    double n = sampleSize;
+    double p = mismatches / n;
+    double z2 = Z_95 * Z_95;
+    double centre = p + z2 / (2 * n);
+    double margin = Z_95 * Math.sqrt(p * (1 - p) / n + z2 / (4 * n * n));
+    return Math.min(1.0, (centre + margin) / (1 + z2 / n));
+  }
+
+  @Override
+  public String toString() {
+    return String.format("fraction=%s, seed=%d, %s", fraction, seed, databaseSide ? "database side" : "client side");
+  }
+
+  private long threshold() {
+    return (long) Math.ceil(fraction * BUCKETS);
+  }
+
+  // 64 bit FNV-1a, seeded, with a final avalanche (splitmix64) so that similar keys spread evenly
+  private long hash(String key) {
+    long hash = 0xcbf29ce484222325L ^ seed;
+    for (int i = 0; i < key.length(); i++) {
+      hash ^= key.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,410 @@
+package com.powertester.compare;
+
+import com.powertester.config.TestConfig;
+import com.typesafe.config.Config;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds one side of a keyed compare, for any number of rows (an external merge sort). Rows are kept
+ * in memory as plain arrays until the store holds {@code maxRowsInMemory} rows. Then that chunk is
+ * sorted by key (parallel sort) and spilled to a compressed run file in the background, while the
+ * next chunk fills. {@link #sortedIterator()} merges the runs (and the rows still in memory) back in
+ * key order. At most {@code maxMergeFanIn} runs are open at a time: with more runs, groups of runs are
+ * first merged into longer runs (in passes) until one merge can read them all. Memory use is thus
+ * bounded by two chunks (plus one row and one read buffer per open run), and a large compare gets
+ * slower (disk) instead of failing with an OutOfMemoryError or running out of file handles.
+ *
+ * <p>Not thread safe: fill a store from one thread, then read it.
+ */
+@Slf4j
+public class SpillingRowStore implements KeyOrderedRows {
+  // Keys are compared as text, nulls first. Both sides of a compare use the same order.
+  public static final Comparator<String> KEY_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+  // Sorts and writes spilled chunks, while the next chunk is filled
+  private static final ExecutorService SPILL_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "row-store-spill");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private String keyColumn; // as spelled in the columns, once they are set
+  private final int maxRowsInMemory;
+  private final int maxMergeFanIn;
+  private final Path spillDirectory;
+  private final List<Path> runs = new ArrayList<>();
+  private final List<RunReader> openReaders = new ArrayList<>();
+  private List<String> columns;
+  private int keyIndex = -1;
+  private List<String[]> rowsInMemory = new ArrayList<>();
+  private Future<Path> pendingSpill; // at most one chunk is spilled at a time
+  private long size;
+
+  /** Store with ROW_STORE_MAX_ROWS_IN_MEMORY, ROW_STORE_MAX_MERGE_FAN_IN and ROW_STORE_SPILL_DIR from config. */
+  public SpillingRowStore(String keyColumn) {
+    this(keyColumn, TestConfig.getInstance().getConfig());
+  }
+
+  private SpillingRowStore(String keyColumn, Config config) {
+    this(keyColumn, config.getInt("ROW_STORE_MAX_ROWS_IN_MEMORY"), config.getInt("ROW_STORE_MAX_MERGE_FAN_IN"),
+        Paths.get(config.getString("ROW_STORE_SPILL_DIR")));
+  }
+
+  /** Store with ROW_STORE_MAX_MERGE_FAN_IN from config. */
+  public SpillingRowStore(String keyColumn, int maxRowsInMemory, Path spillDirectory) {
+    this(keyColumn, maxRowsInMemory, TestConfig.getInstance().getConfig().getInt("ROW_STORE_MAX_MERGE_FAN_IN"),
+        spillDirectory);
+  }
+
+  public SpillingRowStore(String keyColumn, int maxRowsInMemory, int maxMergeFanIn, Path spillDirectory) {
+    if (maxRowsInMemory < 1) {
+      throw new IllegalArgumentException("Keep at least 1 row in memory, but was: " + maxRowsInMemory);
+    }
+    if (maxMergeFanIn < 2) {
+      throw new IllegalArgumentException("Merge at least 2 runs at a time, but was: " + maxMergeFanIn);
+    }
+    this.keyColumn = keyColumn;
+    this.maxRowsInMemory = maxRowsInMemory;
+    this.maxMergeFanIn = maxMergeFanIn;
+    this.spillDirectory = spillDirectory;
+    OpenKeyOrderedRows.opened(this);
+  }
+
+  /** Sets the columns of the rows added with {@link #add(String[])}. Must contain the key column (in any case). */
+  public void setColumns(List<String> columnNames) {
+    if (columns != null) {
+      if (!columns.equals(columnNames)) {
+        throw new IllegalStateException("Columns " + columnNames + " differ from the columns of the store " + columns);
+      }
+      return;
+    }
+    int index = KeyOrderedRows.indexOfKey(columnNames, keyColumn);
+    if (index < 0) {
+      throw new IllegalArgumentException("Key column " + keyColumn + " is not one of " + columnNames);
+    }
+    columns = List.copyOf(columnNames);
+    keyColumn = columns.get(index);
+    keyIndex = index;
+  }
+
+  /** Adds a row. The columns of the store are taken from the first row. */
+  public void add(Map<String, String> row) {
+    if (columns == null) {
+      setColumns(new ArrayList<>(row.keySet()));
+    }
+    String[] values = new String[columns.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = row.get(columns.get(i));
+    }
+    add(values);
+  }
+
+  /** Adds a row with values in the order of {@link #getColumns()}. */
+  public void add(String[] values) {
+    if (columns == null) {
+      throw new IllegalStateException("Set the columns before adding rows as values");
+    }
+    rowsInMemory.add(values);
+    size++;
+    if (rowsInMemory.size() >= maxRowsInMemory) {
+      spill();
+    }
+  }
+
+  @Override
+  public List<String> getColumns() {
+    return columns == null ? List.of() : columns;
+  }
+
+  @Override
+  public String getKeyColumn() {
+    return keyColumn;
+  }
+
+  @Override
+  public int getKeyIndex() {
+    return keyIndex;
+  }
+
+  public long size() {
+    return size;
+  }
+
+  public int getSpilledRunCount() {
+    return runs.size() + (pendingSpill == null ? 0 : 1);
+  }
+
+  /**
+   * All rows in key order (k-way merge of the spilled runs and the rows in memory). The store can be
+   * iterated again, but not changed while it is iterated.
+   */
+  @Override
+  public Iterator<String[]> sortedIterator() {
+    awaitPendingSpill();
+    rowsInMemory.sort(Comparator.comparing((String[] row) -> row[keyIndex], KEY_ORDER));
+    if (runs.isEmpty()) {
+      return rowsInMemory.iterator();
+    }
+
+    // The final merge reads the runs plus the rows in memory
+    while (runs.size() > maxMergeFanIn - 1) {
+      mergePass();
+    }
+
+    List<Iterator<String[]>> sources = new ArrayList<>();
+    for (Path run : runs) {
+      RunReader reader = new RunReader(run, columns.size());
+      openReaders.add(reader);
+      sources.add(reader);
+    }
+    sources.add(rowsInMemory.iterator());
+    return new MergingIterator(sources, keyIndex);
+  }
+
+  /** Deletes the spilled runs. */
+  @Override
+  public void close() {
+    try {
+      awaitPendingSpill();
+    } catch (UncheckedIOException e) {
+      log.warn("Spill of rows failed while closing the store", e);
+    }
+    for (RunReader reader : openReaders) {
+      reader.close();
+    }
+    openReaders.clear();
+    for (Path run : runs) {
+      try {
+        Files.deleteIfExists(run);
+      } catch (IOException e) {
+        log.warn("Could not delete spilled run {}", run, e);
+      }
+    }
+    runs.clear();
+    rowsInMemory = new ArrayList<>();
+    OpenKeyOrderedRows.closed(this);
+  }
+
+  private void spill() {
+    String[][] chunk = rowsInMemory.toArray(new String[0][]);
+    // A new list, so that the old (large) backing array can be garbage collected
+    rowsInMemory = new ArrayList<>();
+
+    awaitPendingSpill();
+    int index = keyIndex;
+    pendingSpill = SPILL_EXECUTOR.submit(() -> writeRun(chunk, index));
+  }
+
+  private void awaitPendingSpill() {
+    if (pendingSpill == null) return;
+    try {
+      runs.add(pendingSpill.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while spilling rows to " + spillDirectory, e);
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof UncheckedIOException uncheckedIOException
+          ? uncheckedIOException : new IllegalStateException("Could not spill rows", e.getCause());
+    } finally {
+      pendingSpill = null;
+    }
+  }
+
+  private Path writeRun(String[][] chunk, int index) {
+    Arrays.parallelSort(chunk, Comparator.comparing((String[] row) -> row[index], KEY_ORDER));
+    Path run = writeRun(Arrays.asList(chunk).iterator());
+    log.debug("Spilled {} rows to {}", chunk.length, run);
+    return run;
+  }
+
+  private Path writeRun(Iterator<String[]> rows) {
+    try {
+      Files.createDirectories(spillDirectory);
+      Path run = Files.createTempFile(spillDirectory, "run-", ".gz");
+      try (DataOutputStream output = new DataOutputStream(
+          new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(run), 64 * 1024)))) {
+        while (rows.hasNext()) {
+          for (String value : rows.next()) {
+            writeValue(output, value);
+          }
+        }
+      }
+      return run;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not spill rows to " + spillDirectory, e);
+    }
+  }
+
+  // Merges each group of maxMergeFanIn runs into one longer run (and deletes the merged runs)
+  private void mergePass() {
+    List<Path> longerRuns = new ArrayList<>();
+    for (int from = 0; from < runs.size(); from += maxMergeFanIn) {
+      List<Path> group = runs.subList(from, Math.min(from + maxMergeFanIn, runs.size()));
+      longerRuns.add(group.size() == 1 ? group.get(0) : mergeRuns(group));
+    }
+    log.debug("Merged {} runs into {}", runs.size(), longerRuns.size());
+    runs.clear();
+    runs.addAll(longerRuns);
+  }
+
+  private Path mergeRuns(List<Path> group) {
+    List<RunReader> readers = new ArrayList<>();
+    Path mergedRun;
+    try {
+      for (Path run : group) {
+        readers.add(new RunReader(run, columns.size()));
+      }
+      mergedRun = writeRun(new MergingIterator(new ArrayList<>(readers), keyIndex));
+    } finally {
+      for (RunReader reader : readers) {
+        reader.close();
+      }
+    }
+    for (Path run : group) {
+      try {
+        Files.deleteIfExists(run);
+      } catch (IOException e) {
+        log.warn("Could not delete merged run {}", run, e);
+      }
+    }
+    return mergedRun;
+  }
+
+  private static void writeValue(DataOutputStream output, String value) throws IOException {
+    if (value == null) {
+      output.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readValue(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) return null;
+    return new String(input.readNBytes(length), StandardCharsets.UTF_8);
+  }
+
+  /** Streams the rows of one run file back, one row at a time. */
+  private static class RunReader implements Iterator<String[]>, Closeable {
+    private final DataInputStream input;
+    private final int columnCount;
+    private String[] next;
+
+    RunReader(Path run, int columnCount) {
+      try {
+        this.input = new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(Files.newInputStream(run), 64 * 1024)));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not read spilled run " + run, e);
+      }
+      this.columnCount = columnCount;
+      this.next = readRow();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public String[] next() {
+      if (next == null) throw new NoSuchElementException();
+      String[] current = next;
+      next = readRow();
+      return current;
+    }
+
+    private String[] readRow() {
+      try {
+        String[] row = new String[columnCount];
+        row[0] = readValue(input);
+        for (int i = 1; i < columnCount; i++) {
+          row[i] = readValue(input);
+        }
+        return row;
+      } catch (EOFException e) {
+        close();
+        return null;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Could not read spilled run", e);
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        input.close();
+      } catch (IOException e) {
+        log.warn("Could not close spilled run", e);
+      }
+    }
+  }
+
+  /** K-way merge of sorted sources, using a heap of the current row of each source. */
+  private static class MergingIterator implements Iterator<String[]> {
+    private final PriorityQueue<Head> heap;
+
+    MergingIterator(List<Iterator<String[]>> sources, int keyIndex) {
+      Comparator<Head> order = Comparator.comparing((Head head) -> head.row[keyIndex], KEY_ORDER);
+      heap = new PriorityQueue<>(Math.max(1, sources.size()), order);
+      for (Iterator<String[]> source : sources) {
+        if (source.hasNext()) {
+          heap.add(new Head(source.next(), source));
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !heap.isEmpty();
+    }
+
+    @Override
+    public String[] next() {
+      Head head = heap.poll();
+      if (head == null) throw new NoSuchElementException();
+      String[] row = head.row;
+      if (head.source.hasNext()) {
+        heap.add(new Head(head.source.next(), head.source));
+      }
+      return row;
+    }
+  }
+
+  private static class Head {
+    final String[] row;
+    final Iterator<String[]> source;
+
+    Head(String[] row, Iterator<String[]> source) {
+      this.row = row;
+      this.source = source;
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package com.powertester.compare;
+
+/**
+ * Decides if an expected and an actual cell value are equal. Values are the typed objects extracted
+ * from the ResultSet (or plain Strings when they come from a CSV file), so a comparator never needs
+ * to turn a matching cell into a String.
+ */
+@FunctionalInterface
+public interface ValueComparator {
+  boolean isEqual(Object expected, Object actual);
+}
@@ -0,0 +1,212 @@
+package com.powertester.compare;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.Objects;
+
+/**
+ * Ready to use comparators for the table compare. Pick one per column, for example:
+ * <pre>
+ *   Map.of("SALARY", ValueComparators.numeric(new BigDecimal("0.01")),
+ *          "UPDATED_AT", ValueComparators.temporal(Duration.ofMillis(1)))
+ * </pre>
+ * Columns without an explicit comparator use {@link #defaultComparator()}.
+ */
+public class ValueComparators {
+  // Accepts both "2024-01-31T10:15:30" and "2024-01-31 10:15:30.123456" (as JDBC drivers print it)
+  private static final DateTimeFormatter LOCAL_DATE_TIME =
+      new DateTimeFormatterBuilder()
+          .append(DateTimeFormatter.ISO_LOCAL_DATE)
+          .optionalStart().appendLiteral('T').optionalEnd()
+          .optionalStart().appendLiteral(' ').optionalEnd()
+          .appendPattern("HH:mm[:ss]")
+          .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+          .toFormatter();
+
+  private static final ValueComparator EXACT = Objects::equals;
+  private static final ValueComparator DEFAULT = ValueComparators::defaultIsEqual;
+
+  private ValueComparators() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /** Values must be exactly equal (same type and same value). */
+  public static ValueComparator exact() {
+    return EXACT;
+  }
+
+  /**
+   * Type aware equality: exact match first, and only when that fails and at least one side is typed
+   * (fetched as a number or a date/time), numbers are compared by value (text "30" equals 30.00) and
+   * date/times are compared as points in time. Two texts are compared exactly ("007" differs from "7"),
+   * use {@link #numeric()} or {@link #temporal(Duration)} to compare text columns by value.
+   */
+  public static ValueComparator defaultComparator() {
+    return DEFAULT;
+  }
+
+  /** Numbers are equal when they have the same value, irrespective of their scale or type. */
+  public static ValueComparator numeric() {
+    return numeric(BigDecimal.ZERO);
+  }
+
+  /** Numbers are equal when their absolute difference is less than or equal to the tolerance. */
+  public static ValueComparator numeric(BigDecimal tolerance) {
+    Objects.requireNonNull(tolerance, "tolerance");
+    if (tolerance.signum() < 0) {
+      throw new IllegalArgumentException("Tolerance can not be negative: " + tolerance);
+    }
+    return (expected, actual) -> Objects.equals(expected, actual) || numericEqual(expected, actual, tolerance);
+  }
+
+  /** Date/times are equal when they are at most the tolerance apart (for example, different precision). */
+  public static ValueComparator temporal(Duration tolerance) {
+    Objects.requireNonNull(tolerance, "tolerance");
+    if (tolerance.isNegative()) {
+      throw new IllegalArgumentException("Tolerance can not be negative: " + tolerance);
+    }
+    return (expected, actual) -> Objects.equals(expected, actual) || temporalEqual(expected, actual, tolerance);
+  }
+
+  private static boolean defaultIsEqual(Object expected, Object actual) {
+    if (Objects.equals(expected, actual)) return true;
+    if (expected == null || actual == null) return false;
+
+    if ((expected instanceof Number || actual instanceof Number) && isNumeric(expected) && isNumeric(actual)) {
+      return numericEqual(expected, actual, BigDecimal.ZERO);
+    }
+    if (isTemporal(expected) || isTemporal(actual)) {
+      return temporalEqual(expected, actual, Duration.ZERO);
+    }
+    if (expected instanceof Boolean || actual instanceof Boolean) {
+      return expected.toString().equalsIgnoreCase(actual.toString());
+    }
+    return false;
+  }
+
+  // --- Numbers ---
+
+  private static boolean isNumeric(Object value) {
+    return value instanceof Number || (value instanceof String text && toBigDecimal(text) != null);
+  }
+
+  private static boolean numericEqual(Object expected, Object actual, BigDecimal tolerance) {
+    if (expected == null || actual == null) return false;
+
+    // Primitive fast paths, so that matching int/long/double columns never allocate.
+    if (isIntegral(expected) && isIntegral(actual)) {
+      long difference = Math.abs(((Number) expected).longValue() - ((Number) actual).longValue());
+      return tolerance.signum() == 0 ? difference == 0 : BigDecimal.valueOf(difference).compareTo(tolerance) <= 0;
+    }
+    if (isFloatingPoint(expected) && isFloatingPoint(actual)) {
+      double difference = Math.abs(((Number) expected).doubleValue() - ((Number) actual).doubleValue());
+      return difference <= tolerance.doubleValue();
+    }
+
+    BigDecimal expectedNumber = toBigDecimal(expected);
+    BigDecimal actualNumber = toBigDecimal(actual);
+    if (expectedNumber == null || actualNumber == null) return false;
+    return expectedNumber.subtract(actualNumber).abs().compareTo(tolerance) <= 0;
+  }
+
+  private static boolean isIntegral(Object value) {
+    return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+  }
+
+  private static boolean isFloatingPoint(Object value) {
+    return value instanceof Double || value instanceof Float;
+  }
+
+  private static BigDecimal toBigDecimal(Object value) {
+    if (value instanceof BigDecimal bigDecimal) return bigDecimal;
+    if (isIntegral(value)) return BigDecimal.valueOf(((Number) value).longValue());
+    if (isFloatingPoint(value)) return BigDecimal.valueOf(((Number) value).doubleValue());
+    String text = value.toString().trim();
+    if (text.isEmpty() || !looksNumeric(text)) return null;
+    try {
+      return new BigDecimal(text);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  // Cheap pre-check so that we don't throw (and catch) exceptions for every non numeric text.
+  private static boolean looksNumeric(String text) {
+    char first = text.charAt(0);
+    return Character.isDigit(first) || first == '-' || first == '+' || first == '.';
+  }
+
+  // --- Date/times ---
+
+  private static boolean isTemporal(Object value) {
+    return value instanceof LocalDateTime || value instanceof LocalDate || value instanceof LocalTime
+        || value instanceof OffsetDateTime || value instanceof ZonedDateTime || value instanceof Instant
+        || value instanceof java.util.Date;
+  }
+
+  private static boolean temporalEqual(Object expected, Object actual, Duration tolerance) {
+    if (expected == null || actual == null) return false;
+
+    if (expected instanceof LocalTime || actual instanceof LocalTime) {
+      LocalTime expectedTime = toLocalTime(expected);
+      LocalTime actualTime = toLocalTime(actual);
+      if (expectedTime == null || actualTime == null) return false;
+      return Duration.between(expectedTime, actualTime).abs().compareTo(tolerance) <= 0;
+    }
+
+    Instant expectedInstant = toInstant(expected);
+    Instant actualInstant = toInstant(actual);
+    if (expectedInstant == null || actualInstant == null) return false;
+    return Duration.between(expectedInstant, actualInstant).abs().compareTo(tolerance) <= 0;
+  }
+
+  // Local date/times have no zone. Both sides are interpreted in UTC so only their difference matters.
+  private static Instant toInstant(Object value) {
+    if (value instanceof Instant instant) return instant;
+    if (value instanceof LocalDateTime localDateTime) return localDateTime.toInstant(ZoneOffset.UTC);
+    if (value instanceof LocalDate localDate) return localDate.atStartOfDay().toInstant(ZoneOffset.UTC);
+    if (value instanceof OffsetDateTime offsetDateTime) return offsetDateTime.toInstant();
+    if (value instanceof ZonedDateTime zonedDateTime) return zonedDateTime.toInstant();
+    if (value instanceof Timestamp timestamp) return timestamp.toLocalDateTime().toInstant(ZoneOffset.UTC);
+    if (value instanceof java.sql.Date date) return date.toLocalDate().atStartOfDay().toInstant(ZoneOffset.UTC);
+    if (value instanceof java.util.Date date) return date.toInstant();
+    return parseInstant(value.toString().trim());
+  }
+
+  private static Instant parseInstant(String text) {
+    try {
+      if (text.length() == 10) {
+        return LocalDate.parse(text).atStartOfDay().toInstant(ZoneOffset.UTC);
+      }
+      return LocalDateTime.parse(text, LOCAL_DATE_TIME).toInstant(ZoneOffset.UTC);
+    } catch (DateTimeParseException e) {
+      try {
+        return OffsetDateTime.parse(text).toInstant();
+      } catch (DateTimeParseException ignored) {
+        return null;
+      }
+    }
+  }
+
+  private static LocalTime toLocalTime(Object value) {
+    if (value instanceof LocalTime localTime) return localTime;
+    if (value instanceof java.sql.Time time) return time.toLocalTime();
+    try {
+      return LocalTime.parse(value.toString().trim());
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.powertester.compare;
+
+import com.powertester.config.TestConfig;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local state file with the last verified watermark per compare (WATERMARK_STATE_FILE, unless a
+ * compare uses a state file of its own). Tests run in parallel, so reads and writes are synchronized,
+ * and the file is replaced atomically so that a killed run never leaves a half written state behind.
+ */
+@Slf4j
+class WatermarkStore {
+  static final Path DEFAULT_STATE_FILE =
+      Paths.get(TestConfig.getInstance().getConfig().getString("WATERMARK_STATE_FILE"));
+
+  private WatermarkStore() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  static synchronized String get(Path stateFile, String compareKey) {
+    return load(stateFile).getProperty(compareKey);
+  }
+
+  static synchronized void put(Path stateFile, String compareKey, String watermark) {
+    Properties watermarks = load(stateFile);
+    watermarks.setProperty(compareKey, watermark);
+    try {
+      Path directory = stateFile.toAbsolutePath().getParent();
+      Files.createDirectories(directory);
+      Path tempFile = Files.createTempFile(directory, "watermarks", ".tmp");
+      try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+        watermarks.store(writer, "Last verified watermark per compare. Delete a line to force a full compare.");
+      }
+      Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not write watermark state file: " + stateFile, e);
+    }
+    log.info("Watermark for {} is now {}", compareKey, watermark);
+  }
+
+  private static Properties load(Path stateFile) {
+    Properties watermarks = new Properties();
+    if (Files.isRegularFile(stateFile)) {
+      try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+        watermarks.load(reader);
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not read watermark state file: " + stateFile, e);
+      }
+    }
+    return watermarks;
+  }
+}
@@ -2,9 +2,17 @@ package com.powertester.config;
 
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
-import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Objects;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 
@@ -38,38 +46,73 @@ public class TestConfig {
     return config;
   }
 
+  /**
+   * Resolves the config once, from the classpath (so that it also works from a packaged jar). Highest
+   * priority first: system properties, application.conf, choices.conf, the files in common/ and the
+   * files in the directory of the TEST_ENV.
+   */
   private Config setConfig() {
     log.info("Call setConfig only once for the whole test run!");
+    long start = System.currentTimeMillis();
 
-    // Standard config load behavior (loads common config from application.conf file)
+    // Standard config load behavior (system properties override the config files)
     // https://github.com/lightbend/config#standard-behavior
-    config = ConfigFactory.load();
+    Config unresolved = ConfigFactory.defaultOverrides()
+        .withFallback(ConfigFactory.parseResourcesAnySyntax("application"))
+        .withFallback(ConfigFactory.parseResourcesAnySyntax("choices"))
+        .withFallback(getAllConfigFromFilesInTheResourcePath("common"));
 
-    Config choicesConfig = ConfigFactory.load("choices");
-    config = config.withFallback(choicesConfig);
+    // Only TEST_ENV is needed to find the env specific files, the whole config is resolved once at the end
+    String testEnvValue = unresolved.withFallback(ConfigFactory.defaultReference()).resolve().getString("TEST_ENV");
+    TestEnv testEnv = TestEnv.getEnumByValue(testEnvValue);
 
-    config = getAllConfigFromFilesInTheResourcePath("common");
+    Config resolved = unresolved
+        .withFallback(getAllConfigFromFilesInTheResourcePath(testEnv.getValue()))
+        .withFallback(ConfigFactory.defaultReference())
+        .resolve();
+    log.info("Config for {} resolved in {} ms", testEnv, System.currentTimeMillis() - start);
+    return resolved;
+  }
 
-    TestEnv testEnv = TestEnv.getEnumByValue(config.getString("TEST_ENV"));
-    return getAllConfigFromFilesInTheResourcePath(testEnv.getValue());
+  // Merges all config files in a directory on the classpath (in file name order)
+  private static Config getAllConfigFromFilesInTheResourcePath(String resourceBasePath) {
+    Config directoryConfig = ConfigFactory.empty();
+    for (String fileName : listResourceFiles(resourceBasePath)) {
+      log.info("file path: {}/{}", resourceBasePath, fileName);
+      directoryConfig = directoryConfig.withFallback(
+          ConfigFactory.parseResources(String.format("%s/%s", resourceBasePath, fileName)));
+    }
+    return directoryConfig;
   }
 
-  private Config getAllConfigFromFilesInTheResourcePath(String resourceBasePath) {
-    try {
-      for (File file :
-          Objects.requireNonNull(
-              Paths.get("src/main/resources/" + resourceBasePath).toFile().listFiles())) {
-        log.info("file path: {}", file);
+  private static List<String> listResourceFiles(String resourceBasePath) {
+    URL directory = Thread.currentThread().getContextClassLoader().getResource(resourceBasePath);
+    if (directory == null) {
+      throw new IllegalStateException("Could not parse config. No config directory on the classpath: "
+          + resourceBasePath);
+    }
 
-        Config childConfig =
-            ConfigFactory.load(String.format("%s/%s", resourceBasePath, file.getName()));
-        config = config.withFallback(childConfig);
+    try {
+      if ("jar".equals(directory.getProtocol())) {
+        // jar:file:/path/to/tests.jar!/common
+        try (FileSystem jar = FileSystems.newFileSystem(directory.toURI(), Map.of())) {
+          return listFiles(jar.getPath(resourceBasePath));
+        }
       }
+      return listFiles(Paths.get(directory.toURI()));
+    } catch (IOException | URISyntaxException exception) {
+      throw new IllegalStateException("Could not parse config. Got issues in listing " + directory, exception);
+    }
+  }
 
-      return config;
-    } catch (Exception exception) {
-      exception.printStackTrace();
-      throw new IllegalStateException("Could not parse config. Got issues in parsing File path.");
+  private static List<String> listFiles(Path directory) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(Files::isRegularFile)
+          .map(file -> file.getFileName().toString())
+          .filter(fileName -> fileName.endsWith(".conf"))
+          .sorted()
+          .toList();
     }
   }
 }
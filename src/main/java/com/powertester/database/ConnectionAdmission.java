@@ -0,0 +1,109 @@
+package com.powertester.database;
+
+import com.powertester.config.TestConfig;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admits tests to the database by connection permits, one permit per pooled connection. A test that
+ * needs more connections than are free waits here, in arrival order (fair semaphore), instead of in
+ * the pool where it would fail after the connection timeout. The time tests wait is kept as a metric.
+ *
+ * <p>Permits are held per thread, so that work of an admitted test that can use more connections (the
+ * lanes of a seed script) knows how many it was admitted with, and can take more only if they are free.
+ */
+@Slf4j
+public class ConnectionAdmission {
+  private static final ConnectionAdmission INSTANCE =
+      new ConnectionAdmission(TestConfig.getInstance().getConfig().getInt("DB_MAXIMUM_POOL_SIZE"));
+
+  private final int permits;
+  private final Semaphore semaphore;
+  private final LongAdder admittedTests = new LongAdder();
+  private final LongAdder queuedTests = new LongAdder();
+  private final LongAdder totalWaitMillis = new LongAdder();
+  private final AtomicLong maxWaitMillis = new AtomicLong();
+  private final ThreadLocal<Integer> heldPermits = ThreadLocal.withInitial(() -> 0);
+
+  /** Admission with its own permits, for example for the pool of a second data source (permits = its pool size). */
+  public ConnectionAdmission(int permits) {
+    this.permits = permits;
+    this.semaphore = new Semaphore(permits, true);
+  }
+
+  public static ConnectionAdmission getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Waits until the connections are free, and takes them. A test can't take more than all
+   * connections of the pool. Returns the number of permits taken (to pass to {@link #release(int)}).
+   */
+  public int acquire(int connections) throws InterruptedException {
+    int needed = Math.min(connections, permits);
+    if (needed < connections) {
+      log.warn("Test needs {} connections, but the pool has only {}. Admitting it with {}.", connections, permits,
+          permits);
+    }
+
+    long start = System.currentTimeMillis();
+    // Unlike tryAcquire(needed), this doesn't overtake tests that are already waiting (fair order)
+    if (!semaphore.tryAcquire(needed, 0, TimeUnit.SECONDS)) {
+      queuedTests.increment();
+      semaphore.acquire(needed);
+      log.info("Waited {} ms for {} free connection(s)", System.currentTimeMillis() - start, needed);
+    }
+    long waitMillis = System.currentTimeMillis() - start;
+
+    admittedTests.increment();
+    totalWaitMillis.add(waitMillis);
+    maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+    heldPermits.set(heldPermits.get() + needed);
+    return needed;
+  }
+
+  /**
+   * Takes up to this many more permits for the current thread, but only those that are free right now:
+   * a thread that waits for more while it holds permits could wait forever for other such threads.
+   * Returns the number of permits taken (to pass to {@link #release(int)}).
+   */
+  public int tryAcquireUpTo(int connections) {
+    for (int taken = Math.min(connections, permits); taken > 0; taken--) {
+      try {
+        if (semaphore.tryAcquire(taken, 0, TimeUnit.SECONDS)) {
+          heldPermits.set(heldPermits.get() + taken);
+          return taken;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return 0;
+      }
+    }
+    return 0;
+  }
+
+  public void release(int connections) {
+    heldPermits.set(Math.max(0, heldPermits.get() - connections));
+    semaphore.release(connections);
+  }
+
+  /** Permits the current thread was admitted with (0 if it was not admitted). */
+  public int getHeldPermits() {
+    return heldPermits.get();
+  }
+
+  public int getAvailablePermits() {
+    return semaphore.availablePermits();
+  }
+
+  /** Queue wait of all admitted tests, for example to log at the end of the test run. */
+  public String getQueueWaitSummary() {
+    long admitted = admittedTests.sum();
+    long averageWait = admitted == 0 ? 0 : totalWaitMillis.sum() / admitted;
+    return String.format("%d tests admitted, %d queued for a connection, queue wait avg %d ms, max %d ms",
+        admitted, queuedTests.sum(), averageWait, maxWaitMillis.get());
+  }
+}
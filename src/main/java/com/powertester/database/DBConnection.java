@@ -1,24 +1,52 @@
 package com.powertester.database;
 
 import com.typesafe.config.Config;
+import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 import lombok.extern.slf4j.Slf4j;
+import com.powertester.compare.ColumnDictionary;
+import com.powertester.compare.DictionaryEncoding;
+import com.powertester.compare.IncrementalCompare;
+import com.powertester.compare.Sampling;
+import com.powertester.compare.SpillingRowStore;
 import com.powertester.config.TestConfig;
 
 @Slf4j
@@ -27,11 +55,46 @@ public class DBConnection {
   private static final String DB_URL = CONFIG.getString("DB_URL");
   private static final String DB_USER = CONFIG.getString("DB_USER");
   private static final String DB_PASSWORD = CONFIG.getString("DB_PASSWORD");
+  private static final int FETCH_SIZE = 1000; // rows per round trip
+  private static final long SLOW_QUERY_THRESHOLD_MS = CONFIG.getLong("SLOW_QUERY_THRESHOLD_MS"); // 0 = off
+  private static final int QUERY_TIMEOUT_SECONDS = CONFIG.getInt("QUERY_TIMEOUT_SECONDS"); // 0 = no timeout
+  private static final int SCRIPT_MAX_PARALLEL_CONNECTIONS = CONFIG.getInt("SCRIPT_MAX_PARALLEL_CONNECTIONS");
+  // Runs statements in parallel for a test (for example, the row counts of both sides of a compare)
+  private static final ExecutorService QUERY_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "db-query");
+    thread.setDaemon(true);
+    return thread;
+  });
   private static final DBConnection INSTANCE = new DBConnection();
-  private HikariDataSource dataSource;
+  private final CompletableFuture<HikariDataSource> dataSource;
+  // Admission of tests to this pool (null: connections are not admitted, as for an injected data source)
+  private final ConnectionAdmission admission;
+  private final long slowQueryThresholdMillis; // 0 = off
+  private final int queryTimeoutSeconds; // 0 = no timeout
+  private volatile String databaseProductName;
+  // Schema used by connections checked out on this thread (null: default schema of the pool)
+  private final ThreadLocal<String> currentSchema = new ThreadLocal<>();
+  private final Set<String> isolatedSchemas = ConcurrentHashMap.newKeySet();
+  private final Map<String, Boolean> createdSchemas = new ConcurrentHashMap<>();
+  // Transaction rollback mode: all statements of this thread's test share one connection (see pinConnection)
+  private final ThreadLocal<Boolean> pinRequested = new ThreadLocal<>();
+  private final ThreadLocal<Connection> pinnedConnection = new ThreadLocal<>();
+  // Statements that are executing, per thread (test) they run for, so that they can be cancelled
+  private final Map<Thread, Set<Statement>> runningStatements = new ConcurrentHashMap<>();
+  private final ThreadLocal<Thread> statementOwner = new ThreadLocal<>();
+  // Statements slower than SLOW_QUERY_THRESHOLD_MS, per thread (test) they run for (see takeSlowQueries)
+  private final Map<Thread, Queue<SlowQuery>> slowQueries = new ConcurrentHashMap<>();
 
   private DBConnection() {
-    dataSource = getDataSource();
+    // The pool is started (and filled to minimumIdle) in the background, while the tests are discovered
+    dataSource = CompletableFuture.supplyAsync(DBConnection::createDataSource, runnable -> {
+      Thread thread = new Thread(runnable, "db-pool-warm-up");
+      thread.setDaemon(true);
+      thread.start();
+    });
+    admission = ConnectionAdmission.getInstance();
+    slowQueryThresholdMillis = SLOW_QUERY_THRESHOLD_MS;
+    queryTimeoutSeconds = QUERY_TIMEOUT_SECONDS;
   }
 
   /**
@@ -39,43 +102,57 @@ public class DBConnection {
    * this constructor allows to inject a specific data source.
    */
   public DBConnection(HikariDataSource dataSource) {
-    this.dataSource = dataSource;
+    this(dataSource, SLOW_QUERY_THRESHOLD_MS, QUERY_TIMEOUT_SECONDS);
+  }
+
+  // Constructor for tests of slow and timed out statements, with a threshold and timeout of their own
+  DBConnection(HikariDataSource dataSource, long slowQueryThresholdMillis, int queryTimeoutSeconds) {
+    this.dataSource = CompletableFuture.completedFuture(dataSource);
+    this.admission = null;
+    this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+    this.queryTimeoutSeconds = queryTimeoutSeconds;
   }
 
   public static DBConnection getInstance() {
     return INSTANCE;
   }
 
+  private static HikariDataSource createDataSource() {
+    long start = System.currentTimeMillis();
+    HikariConfig hikariConfig = new HikariConfig();
+    hikariConfig.setJdbcUrl(DB_URL);
+    hikariConfig.setUsername(DB_USER);
+    hikariConfig.setPassword(DB_PASSWORD);
+    hikariConfig.setMaximumPoolSize(CONFIG.getInt("DB_MAXIMUM_POOL_SIZE")); // 20 connections
+    hikariConfig.setMinimumIdle(10); // 10 connections
+    hikariConfig.setConnectionTimeout(30000); // 30 seconds
+    hikariConfig.setIdleTimeout(30000); // 30 seconds
+    hikariConfig.setMaxLifetime(1800000); // 30 minutes
+    hikariConfig.setLeakDetectionThreshold(30000); // 30 seconds
+    hikariConfig.setPoolName("PowerTester");
+
+    // Starts the pool right away: opens the first connection (fails fast) and fills up to minimumIdle
+    HikariDataSource hikariDataSource = new HikariDataSource(hikariConfig);
+    log.info("Hikari datasource initialized in {} ms", System.currentTimeMillis() - start);
+    return hikariDataSource;
+  }
+
+  // Waits for the pool warm-up (only the first call can wait)
   private HikariDataSource getDataSource() {
     try {
-      if (dataSource == null) {
-        dataSource = new HikariDataSource();
-        dataSource.setJdbcUrl(DB_URL);
-        dataSource.setUsername(DB_USER);
-        dataSource.setPassword(DB_PASSWORD);
-        dataSource.setMaximumPoolSize(20); // 20 connections
-        dataSource.setMinimumIdle(10); // 10 connections
-        dataSource.setConnectionTimeout(30000); // 30 seconds
-        dataSource.setIdleTimeout(30000); // 30 seconds
-        dataSource.setMaxLifetime(1800000); // 30 minutes
-        dataSource.setLeakDetectionThreshold(30000); // 30 seconds
-        dataSource.setPoolName("PowerTester");
-      }
-    } catch (Exception e) {
-      log.error("Error initializing Hikari datasource", e);
-      log.error("⚠ Cancelling test run since tests depend on Database Connection");
-      System.exit(1);
+      return dataSource.join();
+    } catch (CompletionException e) {
+      throw new IllegalStateException("Could not initialize the Hikari datasource for " + DB_URL
+          + ". Tests depend on the database connection.", e.getCause());
     }
-
-    log.info("Hikari datasource initialized");
-    return dataSource;
   }
 
   public void logConnectionPoolStatus() {
-    if (dataSource != null && dataSource.getHikariPoolMXBean() != null) {
-      int active = dataSource.getHikariPoolMXBean().getActiveConnections();
-      int idle = dataSource.getHikariPoolMXBean().getIdleConnections();
-      int total = dataSource.getHikariPoolMXBean().getTotalConnections();
+    HikariDataSource pool = dataSource.isDone() && !dataSource.isCompletedExceptionally() ? dataSource.join() : null;
+    if (pool != null && pool.getHikariPoolMXBean() != null) {
+      int active = pool.getHikariPoolMXBean().getActiveConnections();
+      int idle = pool.getHikariPoolMXBean().getIdleConnections();
+      int total = pool.getHikariPoolMXBean().getTotalConnections();
       log.info("HikariCP Pool Status - Active: {}, Idle: {}, Total: {}", active, idle, total);
     } else {
       log.warn("HikariCP Pool MXBean not available.");
@@ -83,32 +160,302 @@ public class DBConnection {
   }
   
   public Connection getConnection() throws SQLException {
-    Connection connection = dataSource.getConnection();
+    Connection pinned = pinnedConnection.get();
+    if (pinned != null) {
+      return nonClosing(pinned);
+    }
+    if (Boolean.TRUE.equals(pinRequested.get())) {
+      pinned = checkOutConnection();
+      pinned.setAutoCommit(false);
+      pinnedConnection.set(pinned);
+      return nonClosing(pinned);
+    }
+    return checkOutConnection();
+  }
+
+  private Connection checkOutConnection() throws SQLException {
+    Connection connection = getDataSource().getConnection();
     try (Statement statement = connection.createStatement()) {
       statement.execute(CONFIG.getString("QUERY_TO_SET_SCHEMA_USER"));
       statement.execute(CONFIG.getString("QUERY_TO_SET_DATE_FORMAT"));
+
+      // Hikari resets the schema when the connection goes back to the pool
+      String schema = currentSchema.get();
+      if (schema != null) {
+        createIsolatedSchemaOnFirstUse(statement, schema);
+        connection.setSchema(schema);
+      }
     } catch (Exception e) {
+      connection.close();
       throw new IllegalStateException("Error setting schema and date format", e);
     }
     return connection;
   }
 
+  /**
+   * Starts transaction rollback mode for this thread: the first statement checks out a connection and
+   * starts a transaction on it, and all statements (query, update, runStoredProcedure, ...) of this
+   * thread then run on that same connection until {@link #rollbackPinnedConnection()}. Note that most
+   * databases commit DDL (CREATE, DROP, ...) implicitly, so only data changes are rolled back.
+   */
+  public void pinConnection() {
+    pinRequested.set(Boolean.TRUE);
+  }
+
+  // Rolls back everything done on the pinned connection and returns it to the pool
+  public void rollbackPinnedConnection() {
+    pinRequested.remove();
+    Connection pinned = pinnedConnection.get();
+    if (pinned == null) return;
+
+    pinnedConnection.remove();
+    try {
+      pinned.rollback();
+    } catch (SQLException e) {
+      throw new IllegalStateException("Error rolling back test transaction", e);
+    } finally {
+      try {
+        pinned.close(); // Hikari restores auto commit when the connection goes back to the pool
+      } catch (SQLException e) {
+        log.warn("Error closing pinned connection", e);
+      }
+    }
+  }
+
+  // Callers close connections with try-with-resources. A pinned connection must survive that.
+  private static Connection nonClosing(Connection connection) {
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+        (proxy, method, arguments) -> {
+          if (method.getName().equals("close")) {
+            return null;
+          }
+          try {
+            return method.invoke(connection, arguments);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
+
+  /**
+   * Lets every connection checked out on this thread use its own schema (created on first use and
+   * cached for the rest of the run), so that test classes running in parallel can use the same table
+   * names. Returns the schema that was in use before, to restore it with {@link #useSchema(String)}.
+   */
+  public String useIsolatedSchema(String schemaName) {
+    isolatedSchemas.add(schemaName);
+    return useSchema(schemaName);
+  }
+
+  // On the connection that first uses the schema, so that creating it takes no connection of its own (nor a permit)
+  private void createIsolatedSchemaOnFirstUse(Statement statement, String schemaName) {
+    if (!isolatedSchemas.contains(schemaName)) return;
+    createdSchemas.computeIfAbsent(schemaName, name -> {
+      try {
+        statement.execute(String.format(CONFIG.getString("QUERY_TO_CREATE_SCHEMA"), name));
+      } catch (SQLException e) {
+        throw new IllegalStateException("Error creating isolated schema " + name, e);
+      }
+      log.info("Created isolated schema {}", name);
+      return Boolean.TRUE;
+    });
+  }
+
+  // Sets the schema for connections checked out on this thread (null for the default schema). Returns the previous one.
+  public String useSchema(String schemaName) {
+    String previousSchema = currentSchema.get();
+    if (schemaName == null) {
+      currentSchema.remove();
+    } else {
+      currentSchema.set(schemaName);
+    }
+    return previousSchema;
+  }
+
+  public String getCurrentSchema() {
+    return currentSchema.get();
+  }
+
+  // Drop all isolated schemas of this run in one go (on one connection, as a batch)
+  public void dropIsolatedSchemas() {
+    if (createdSchemas.isEmpty()) return;
+
+    String previousSchema = useSchema(null);
+    try (Connection connection = getConnection();
+        Statement statement = connection.createStatement()) {
+      for (String schemaName : createdSchemas.keySet()) {
+        statement.addBatch(String.format(CONFIG.getString("QUERY_TO_DROP_SCHEMA"), schemaName));
+      }
+      statement.executeBatch();
+      log.info("Dropped {} isolated schemas", createdSchemas.size());
+      createdSchemas.clear();
+    } catch (Exception e) {
+      log.error("Error dropping isolated schemas {}", createdSchemas.keySet(), e);
+    } finally {
+      useSchema(previousSchema);
+    }
+  }
+
   // Execute update query
   public void update(String sql) {
+    long start = System.nanoTime();
     try (Connection connection = getConnection();
         Statement statement = connection.createStatement()) {
-      statement.executeUpdate(sql);
-    } catch (Exception e) {
+      statement.setQueryTimeout(queryTimeoutSeconds);
+      executeUpdate(statement, sql, start);
+    } catch (SQLException e) {
       throw new IllegalStateException("Error executing update query" + sql, e);
     }
   }
 
+  /**
+   * Runs the statements of a script. Independent statements run at the same time: DDL is a barrier,
+   * and the INSERT, UPDATE and DELETE statements between barriers run per table, on up to
+   * SCRIPT_MAX_PARALLEL_CONNECTIONS pooled connections (see ScriptPlan). Scripts with foreign keys
+   * (created by the script, or on a table it changes), and scripts in a pinned (rolled back)
+   * transaction, run statement by statement.
+   */
   public void updateFromFile(String filePath) {
     List<String> statements = extractSqlStatements(filePath);
-    update(statements);
+    if (SCRIPT_MAX_PARALLEL_CONNECTIONS <= 1 || Boolean.TRUE.equals(pinRequested.get())
+        || ScriptPlan.hasForeignKeys(statements) || hasForeignKeys(ScriptPlan.changedTablesOf(statements))) {
+      update(statements);
+      return;
+    }
+
+    for (List<List<String>> step : ScriptPlan.stepsOf(statements)) {
+      if (step.size() == 1) {
+        updateOnOneConnection(step.get(0));
+      } else {
+        updateConcurrently(step);
+      }
+    }
+  }
+
+  /**
+   * Whether any of the tables has a foreign key (to or from it) in the database, for example created by
+   * an earlier script. Tables are looked up in every schema: a table of the same name elsewhere only
+   * costs parallelism.
+   */
+  boolean hasForeignKeys(Set<String> tables) {
+    if (tables.isEmpty()) return false;
+
+    try (Connection connection = getConnection()) {
+      DatabaseMetaData metaData = connection.getMetaData();
+      for (String table : tables) {
+        // Unquoted names are upper case in the script plan, but some databases store them lower case
+        Set<String> names = new LinkedHashSet<>(List.of(table));
+        if (metaData.storesLowerCaseIdentifiers()) names.add(table.toLowerCase(Locale.ROOT));
+        for (String name : names) {
+          if (hasRows(metaData.getImportedKeys(null, null, name))
+              || hasRows(metaData.getExportedKeys(null, null, name))) {
+            log.debug("Table {} has foreign keys, the script runs in script order", name);
+            return true;
+          }
+        }
+      }
+      return false;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Error looking up the foreign keys of " + tables, e);
+    }
+  }
+
+  private static boolean hasRows(ResultSet resultSet) throws SQLException {
+    try (resultSet) {
+      return resultSet.next();
+    }
+  }
+
+  // Table groups spread over at most SCRIPT_MAX_PARALLEL_CONNECTIONS lanes, each lane on its own connection
+  private void updateConcurrently(List<List<String>> tableGroups) {
+    int wantedLanes = Math.min(SCRIPT_MAX_PARALLEL_CONNECTIONS, tableGroups.size());
+    // An admitted test (or class set up) uses the connections it was admitted with, plus those free right now
+    int heldPermits = admission == null ? 0 : admission.getHeldPermits();
+    int extraPermits = heldPermits == 0 ? 0 : admission.tryAcquireUpTo(wantedLanes - heldPermits);
+    try {
+      updateInLanes(tableGroups, heldPermits == 0 ? wantedLanes : Math.min(wantedLanes, heldPermits + extraPermits));
+    } finally {
+      if (extraPermits > 0) admission.release(extraPermits);
+    }
+  }
+
+  private void updateInLanes(List<List<String>> tableGroups, int laneCount) {
+    List<List<String>> lanes = new ArrayList<>();
+    for (int i = 0; i < laneCount; i++) {
+      lanes.add(new ArrayList<>());
+    }
+    for (int i = 0; i < tableGroups.size(); i++) {
+      lanes.get(i % laneCount).addAll(tableGroups.get(i));
+    }
+
+    log.debug("Running {} table groups on {} connections", tableGroups.size(), laneCount);
+    AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+    List<CompletableFuture<Void>> running = new ArrayList<>();
+    for (List<String> lane : lanes) {
+      running.add(supplyOnBehalfOfCurrentThread(() -> {
+        try {
+          updateOnOneConnection(lane, () -> firstFailure.get() != null);
+        } catch (RuntimeException e) {
+          // The other lanes stop: their running statement is cancelled, and they start no next one
+          if (firstFailure.compareAndSet(null, e)) cancelRunningStatements();
+        }
+        return null;
+      }));
+    }
+
+    // No lane may still be changing tables when the script moves on, or fails
+    running.forEach(CompletableFuture::join);
+    if (firstFailure.get() != null) {
+      throw firstFailure.get();
+    }
+  }
+
+  private void updateOnOneConnection(List<String> sqlStatements) {
+    updateOnOneConnection(sqlStatements, () -> false);
+  }
+
+  // Runs the statements in order, until one fails or stopped is true
+  private void updateOnOneConnection(List<String> sqlStatements, BooleanSupplier stopped) {
+    Thread owner = getStatementOwner();
+    try (Connection connection = getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.setQueryTimeout(queryTimeoutSeconds);
+      registerRunningStatement(owner, statement);
+      try {
+        for (String sql : sqlStatements) {
+          if (stopped.getAsBoolean()) return;
+          executeUpdate(statement, sql, System.nanoTime());
+        }
+      } finally {
+        unregisterRunningStatement(owner, statement);
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Error executing update queries", e);
+    }
   }
 
-  private static List<String> extractSqlStatements(String sqlFilePath) {
+  // Runs the update on a checked out statement (start: when checking out began), and records it when it is slow
+  private void executeUpdate(Statement statement, String sql, long start) {
+    long connected = System.nanoTime();
+    try {
+      statement.executeUpdate(sql);
+    } catch (SQLException e) {
+      // A statement that timed out (or failed after a long time) is the one to diagnose
+      long failed = System.nanoTime();
+      if (isSlow(start, failed)) {
+        recordSlowQuery(new SlowQuery(sql, List.of(), millis(start, failed), millis(start, connected),
+            millis(connected, failed), 0, null, e.getMessage()));
+      }
+      throw new IllegalStateException("Error executing update query" + sql, e);
+    }
+    long executed = System.nanoTime();
+    if (isSlow(start, executed)) {
+      recordSlowQuery(new SlowQuery(sql, List.of(), millis(start, executed), millis(start, connected),
+          millis(connected, executed), 0, null, null));
+    }
+  }
+
+  static List<String> extractSqlStatements(String sqlFilePath) {
       List<String> statements = new ArrayList<>();
       try (BufferedReader reader = new BufferedReader(new FileReader(sqlFilePath))) {
           StringBuilder queryBuilder = new StringBuilder();
@@ -140,45 +487,524 @@ public class DBConnection {
   // Preferred option 1: Execute a prepared statement and return the resultSet data as a list of map
   // of column name and value
   public List<Map<String, String>> query(String sql, String... parameters) {
-    try (Connection connection = getConnection();
-        PreparedStatement statement = connection.prepareStatement(sql)) {
+    return query(sql, Projection.all(), parameters);
+  }
 
-      // Set the parameters
-      int parameterIndex = 1;
-      for (String parameter : parameters) {
-        statement.setObject(parameterIndex++, parameter);
+  // Same as above, but only the columns of the projection are selected (ignored columns are never fetched)
+  public List<Map<String, String>> query(String sql, Projection projection, String... parameters) {
+    return executeQuery(sql, projection, DBConnection::getResultListFromResultSet, parameters);
+  }
+
+  // Create another method for executePreparedStatement which accepts file paths that contains SQLs to execute
+  public List<Map<String, String>> queryFromFile(String filePath) {
+    return queryFromFile(filePath, Projection.all());
+  }
+
+  public List<Map<String, String>> queryFromFile(String filePath, Projection projection) {
+    String sql = extractSqlStatements(filePath).get(0);
+    return query(sql, projection);
+  }
+
+  // Preferred option 2: Same as query, but values keep their column type (Integer, BigDecimal, LocalDateTime, ...)
+  // instead of being converted to a String. Use this for the table compare of wide or numeric tables.
+  public List<Map<String, Object>> queryTyped(String sql, String... parameters) {
+    return queryTyped(sql, Projection.all(), parameters);
+  }
+
+  public List<Map<String, Object>> queryTyped(String sql, Projection projection, String... parameters) {
+    return executeQuery(sql, projection, DBConnection::getTypedResultListFromResultSet, parameters);
+  }
+
+  public List<Map<String, Object>> queryTypedFromFile(String filePath) {
+    return queryTypedFromFile(filePath, Projection.all());
+  }
+
+  public List<Map<String, Object>> queryTypedFromFile(String filePath, Projection projection) {
+    String sql = extractSqlStatements(filePath).get(0);
+    return queryTyped(sql, projection);
+  }
+
+  /**
+   * Streams the rows of the query into a row store (for a keyed compare of tables larger than the
+   * heap). The driver is asked to fetch in batches, so rows never pile up in the JDBC layer either.
+   */
+  public void queryIntoStore(String sql, SpillingRowStore store, String... parameters) {
+    executeQuery(sql, Projection.all(), resultSet -> {
+      String[] columnNames = getColumnNames(resultSet.getMetaData());
+      ColumnDictionary[] dictionaries = DictionaryEncoding.forColumns(columnNames);
+      store.setColumns(Arrays.asList(columnNames));
+      while (resultSet.next()) {
+        String[] values = new String[columnNames.length];
+        for (int i = 1; i <= columnNames.length; i++) {
+          values[i - 1] = DictionaryEncoding.encode(dictionaries[i - 1], resultSet.getString(i));
+        }
+        store.add(values);
       }
+      return store;
+    }, parameters);
+  }
 
-      try (ResultSet resultSet = statement.executeQuery()) {
-        return getResultListFromResultSet(resultSet);
+  /**
+   * Opens a cursor over the rows of the query, ordered by the key column as text (the key order of a
+   * keyed compare, see SpillingRowStore.KEY_ORDER). Pass it to TableCompareExtension.captureRowsByKey
+   * to compare it with, for example, an unsorted CSV file, without holding the database rows in memory.
+   * The cursor keeps its connection (and can be cancelled as a running statement) until it is closed.
+   */
+  public KeyOrderedCursor openKeyOrderedCursor(String sql, String keyColumn, String... parameters) {
+    String orderedSql = "SELECT * FROM (" + stripTrailingSemicolons(sql) + ") q ORDER BY CAST(q." + keyColumn
+        + " AS VARCHAR(4000)) NULLS FIRST";
+    Thread owner = getStatementOwner();
+    Connection connection = null;
+    PreparedStatement statement = null;
+    try {
+      connection = getConnection();
+      statement = connection.prepareStatement(orderedSql);
+      statement.setFetchSize(FETCH_SIZE);
+      statement.setQueryTimeout(queryTimeoutSeconds);
+      setParameters(statement, parameters);
+
+      PreparedStatement runningStatement = statement;
+      registerRunningStatement(owner, runningStatement);
+      ResultSet resultSet = statement.executeQuery();
+      return new KeyOrderedCursor(connection, statement, resultSet, keyColumn,
+          Arrays.asList(getColumnNames(resultSet.getMetaData())),
+          () -> unregisterRunningStatement(owner, runningStatement));
+    } catch (SQLException e) {
+      if (statement != null) unregisterRunningStatement(owner, statement);
+      closeQuietly(statement);
+      closeQuietly(connection);
+      throw new IllegalStateException("Error opening key ordered cursor for " + sql, e);
+    }
+  }
+
+  private static void closeQuietly(AutoCloseable closeable) {
+    if (closeable == null) return;
+    try {
+      closeable.close();
+    } catch (Exception e) {
+      log.warn("Could not close {}", closeable, e);
+    }
+  }
+
+  public void queryFromFileIntoStore(String filePath, SpillingRowStore store) {
+    String sql = extractSqlStatements(filePath).get(0);
+    queryIntoStore(sql, store);
+  }
+
+  /**
+   * Returns only the rows whose key is in the sample, in no particular order: the sampled compare
+   * (TableCompareExtension.captureSampledRows) matches rows on the key. On databases with ORA_HASH
+   * (Oracle, H2) the sample is taken in the database. Otherwise (or for a client side sampling) only
+   * the key is read for rows that are not in the sample.
+   */
+  public List<Map<String, String>> querySample(String sql, String keyColumn, Sampling sampling,
+      String... parameters) {
+    String innerSql = stripTrailingSemicolons(sql);
+    if (sampling.isDatabaseSide() && supportsOraHash()) {
+      String sampleSql = "SELECT * FROM (" + innerSql + ") s WHERE " + sampling.sqlPredicate("s." + keyColumn);
+      return query(sampleSql, parameters);
+    }
+
+    // No ORDER BY: the database would sort the whole table, only for most of it to be skipped here
+    return executeQuery(innerSql, Projection.all(),
+        resultSet -> getSampledResultListFromResultSet(resultSet, keyColumn, sampling), parameters);
+  }
+
+  /**
+   * Returns only the rows with a watermark in the window of the incremental compare, in no particular
+   * order: the incremental compare (TableCompareExtension.captureIncrementalRows) matches rows on the
+   * key. The first call of a compare fixes the upper end of the window to the highest watermark of its
+   * query, so both sides see the same window.
+   */
+  public List<Map<String, String>> queryIncremental(String sql, IncrementalCompare incremental,
+      String... parameters) {
+    String innerSql = stripTrailingSemicolons(sql);
+    String watermarkColumn = "w." + incremental.getWatermarkColumn();
+
+    if (!incremental.isUpperWatermarkResolved()) {
+      String maxSql = "SELECT MAX(" + watermarkColumn + ") AS WATERMARK FROM (" + innerSql + ") w";
+      incremental.resolveUpperWatermark(query(maxSql, parameters).get(0).get("WATERMARK"));
+    }
+    if (incremental.getUpperWatermark() == null) {
+      log.info("Nothing to compare for {}: query returned no rows", incremental);
+      return new ArrayList<>();
+    }
+
+    List<String> windowParameters = new ArrayList<>(Arrays.asList(parameters));
+    StringBuilder windowSql = new StringBuilder("SELECT * FROM (").append(innerSql).append(") w WHERE ");
+    if (!incremental.isFullCompare()) {
+      windowSql.append(watermarkColumn).append(" > ? AND ");
+      windowParameters.add(incremental.getFromWatermark());
+    }
+    windowSql.append(watermarkColumn).append(" <= ?");
+    windowParameters.add(incremental.getUpperWatermark());
+
+    log.info("Incremental compare {}", incremental);
+    return query(windowSql.toString(), windowParameters.toArray(new String[0]));
+  }
+
+  private boolean supportsOraHash() {
+    String productName = getDatabaseProductName();
+    return productName.equalsIgnoreCase("H2") || productName.equalsIgnoreCase("Oracle");
+  }
+
+  // Database product name (for example "H2" or "Oracle"), read once from the connection metadata
+  public String getDatabaseProductName() {
+    if (databaseProductName == null) {
+      try (Connection connection = getConnection()) {
+        databaseProductName = connection.getMetaData().getDatabaseProductName();
+      } catch (SQLException e) {
+        throw new IllegalStateException("Error reading database metadata", e);
       }
+    }
+    return databaseProductName;
+  }
+
+  @FunctionalInterface
+  private interface ResultSetReader<T> {
+    T read(ResultSet resultSet) throws SQLException;
+  }
+
+  private <T> T executeQuery(String sql, Projection projection, ResultSetReader<T> reader, String... parameters) {
+    long start = System.nanoTime();
+    try (Connection connection = getConnection()) {
+      String projectedSql = projectSql(connection, sql, projection);
+      T result;
+      long connected = System.nanoTime();
+      long executed = connected;
+      try (PreparedStatement statement = connection.prepareStatement(projectedSql)) {
+        statement.setFetchSize(FETCH_SIZE);
+        statement.setQueryTimeout(queryTimeoutSeconds);
+        setParameters(statement, parameters);
+        connected = System.nanoTime();
+        executed = connected;
+
+        Thread owner = getStatementOwner();
+        registerRunningStatement(owner, statement);
+        try (ResultSet resultSet = statement.executeQuery()) {
+          executed = System.nanoTime();
+          result = reader.read(resultSet);
+        } finally {
+          unregisterRunningStatement(owner, statement);
+        }
+      } catch (SQLException e) {
+        // A query that timed out (or failed after a long time) is the one to diagnose, plan included
+        long failed = System.nanoTime();
+        if (isSlow(start, failed)) {
+          recordSlowQuery(new SlowQuery(projectedSql, Arrays.asList(parameters), millis(start, failed),
+              millis(start, connected), millis(connected, executed), millis(executed, failed),
+              explain(connection, projectedSql, parameters), e.getMessage()));
+        }
+        throw e;
+      }
+
+      long fetched = System.nanoTime();
+      if (isSlow(start, fetched)) {
+        recordSlowQuery(new SlowQuery(projectedSql, Arrays.asList(parameters), millis(start, fetched),
+            millis(start, connected), millis(connected, executed), millis(executed, fetched),
+            explain(connection, projectedSql, parameters), null));
+      }
+      return result;
     } catch (Exception e) {
       throw new IllegalStateException("Error executing prepared statement" + sql, e);
     }
   }
 
-  // Create another method for executePreparedStatement which accepts file paths that contains SQLs to execute
-  public List<Map<String, String>> queryFromFile(String filePath) {
-    String sql = extractSqlStatements(filePath).get(0);
-    return query(sql);
+  private static void setParameters(PreparedStatement statement, String... parameters) throws SQLException {
+    int parameterIndex = 1;
+    for (String parameter : parameters) {
+      statement.setObject(parameterIndex++, parameter);
+    }
+  }
+
+  /**
+   * Slow statements of the current thread (the test) since the last call, including those run for it
+   * on other threads. They are also logged when they happen.
+   */
+  public List<SlowQuery> takeSlowQueries() {
+    Queue<SlowQuery> queries = slowQueries.remove(getStatementOwner());
+    return queries == null ? List.of() : new ArrayList<>(queries);
+  }
+
+  private boolean isSlow(long startNanos, long endNanos) {
+    return slowQueryThresholdMillis > 0 && millis(startNanos, endNanos) >= slowQueryThresholdMillis;
+  }
+
+  private static long millis(long startNanos, long endNanos) {
+    return (endNanos - startNanos) / 1_000_000;
+  }
+
+  private void recordSlowQuery(SlowQuery slowQuery) {
+    log.warn("Slow query ({} ms, threshold {} ms): {}", slowQuery.getTotalMillis(), slowQueryThresholdMillis,
+        slowQuery.getSql());
+    slowQueries.computeIfAbsent(getStatementOwner(), key -> new ConcurrentLinkedQueue<>()).add(slowQuery);
+  }
+
+  // Execution plan (QUERY_TO_EXPLAIN) of a query, with the same bind values. A plan is best effort: never fails the query.
+  private static String explain(Connection connection, String sql, String... parameters) {
+    String explainQuery = CONFIG.hasPath("QUERY_TO_EXPLAIN") ? CONFIG.getString("QUERY_TO_EXPLAIN") : "";
+    if (explainQuery.isBlank()) return null;
+
+    try (PreparedStatement statement = connection.prepareStatement(String.format(explainQuery, sql))) {
+      setParameters(statement, parameters);
+      StringBuilder plan = new StringBuilder();
+      try (ResultSet resultSet = statement.executeQuery()) {
+        int columnCount = resultSet.getMetaData().getColumnCount();
+        while (resultSet.next()) {
+          for (int i = 1; i <= columnCount; i++) {
+            plan.append(i > 1 ? "\t" : "").append(resultSet.getString(i));
+          }
+          plan.append('\n');
+        }
+      }
+      return plan.toString();
+    } catch (SQLException e) {
+      log.warn("Could not explain slow query: {}", sql, e);
+      return "Could not explain query: " + e.getMessage();
+    }
+  }
+
+  // Count the rows of a query in the database (no rows are fetched)
+  public long countRows(String sql, String... parameters) {
+    String countSql = "SELECT COUNT(*) AS ROW_COUNT FROM (" + stripTrailingSemicolons(sql) + ") c";
+    return executeQuery(countSql, Projection.all(), resultSet -> {
+      resultSet.next();
+      return resultSet.getLong(1);
+    }, parameters);
+  }
+
+  /**
+   * Completeness check before any row is fetched: counts both queries at the same time (each on its
+   * own pooled connection) and fails when the counts differ. Run this first, so that a count mismatch
+   * does not cost a full fetch of both sides.
+   */
+  public void assertSameRowCount(String expectedSql, String actualSql) {
+    long[] counts = countRowsConcurrently(expectedSql, actualSql);
+    if (counts[0] != counts[1]) {
+      fail(String.format("Completeness check failed: expected %d rows, but got %d rows. Expected: %s Actual: %s",
+          counts[0], counts[1], expectedSql, actualSql));
+    }
+    log.info("Completeness check passed: both sides have {} rows", counts[0]);
+  }
+
+  public long[] countRowsConcurrently(String expectedSql, String actualSql) {
+    // A pinned connection (transaction rollback mode) can't be shared between threads
+    if (Boolean.TRUE.equals(pinRequested.get())) {
+      return new long[] {countRows(expectedSql), countRows(actualSql)};
+    }
+
+    CompletableFuture<Long> expectedCount = supplyOnBehalfOfCurrentThread(() -> countRows(expectedSql));
+    CompletableFuture<Long> actualCount = supplyOnBehalfOfCurrentThread(() -> countRows(actualSql));
+    try {
+      return new long[] {expectedCount.join(), actualCount.join()};
+    } catch (CompletionException e) {
+      // No need to wait for the other count if one of them failed
+      cancelRunningStatements();
+      throw e.getCause() instanceof RuntimeException runtimeException
+          ? runtimeException : new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Runs the task on the query executor, with the schema of the current thread, and with the
+   * statements it runs owned by the current thread (so that {@link #cancelRunningStatements()} on the
+   * current thread also cancels them).
+   */
+  private <T> CompletableFuture<T> supplyOnBehalfOfCurrentThread(Supplier<T> task) {
+    Thread owner = getStatementOwner();
+    String schema = currentSchema.get();
+    return CompletableFuture.supplyAsync(() -> {
+      String previousSchema = useSchema(schema);
+      statementOwner.set(owner);
+      try {
+        return task.get();
+      } finally {
+        statementOwner.remove();
+        useSchema(previousSchema);
+      }
+    }, QUERY_EXECUTOR);
+  }
+
+  /**
+   * Cancels the statements that are still running for the current thread (the test), including those
+   * run for it on other threads. Used to fail fast, for example when a compare reached its max diffs.
+   */
+  public void cancelRunningStatements() {
+    Set<Statement> statements = runningStatements.get(getStatementOwner());
+    if (statements == null) return;
+
+    for (Statement statement : statements) {
+      try {
+        statement.cancel();
+        log.info("Cancelled running statement");
+      } catch (SQLException e) {
+        log.warn("Could not cancel running statement", e);
+      }
+    }
+  }
+
+  private Thread getStatementOwner() {
+    Thread owner = statementOwner.get();
+    return owner == null ? Thread.currentThread() : owner;
+  }
+
+  private void registerRunningStatement(Thread owner, Statement statement) {
+    runningStatements.computeIfAbsent(owner, key -> ConcurrentHashMap.newKeySet()).add(statement);
+  }
+
+  private void unregisterRunningStatement(Thread owner, Statement statement) {
+    runningStatements.computeIfPresent(owner, (key, statements) -> {
+      statements.remove(statement);
+      return statements.isEmpty() ? null : statements;
+    });
+  }
+
+  /**
+   * Wraps the sql in an outer select that only lists the columns of the projection. Column names are
+   * resolved from the statement metadata (without running the query), so that excludes work on
+   * "SELECT *" queries and includes are matched case insensitive.
+   */
+  private static String projectSql(Connection connection, String sql, Projection projection) throws SQLException {
+    if (projection.isAll()) return sql;
+
+    String innerSql = stripTrailingSemicolons(sql);
+    String[] columnNames;
+    try (PreparedStatement statement = connection.prepareStatement(innerSql)) {
+      ResultSetMetaData metaData = statement.getMetaData();
+      if (metaData != null) {
+        columnNames = getColumnLabels(metaData);
+      } else {
+        // Some drivers only know the columns after execution. Run it without returning any rows.
+        try (PreparedStatement emptyStatement =
+                connection.prepareStatement("SELECT * FROM (" + innerSql + ") q WHERE 1 = 0");
+            ResultSet resultSet = emptyStatement.executeQuery()) {
+          columnNames = getColumnLabels(resultSet.getMetaData());
+        }
+      }
+    }
+
+    String quote = connection.getMetaData().getIdentifierQuoteString().trim();
+    List<String> selectedColumns = new ArrayList<>();
+    for (String columnName : columnNames) {
+      if (projection.isSelected(columnName)) {
+        selectedColumns.add(quote + columnName.replace(quote, quote + quote) + quote);
+      }
+    }
+
+    for (String includedField : projection.getIncludedFields()) {
+      if (Arrays.stream(columnNames).noneMatch(includedField::equalsIgnoreCase)) {
+        throw new IllegalArgumentException("Included field " + includedField + " is not returned by: " + sql);
+      }
+    }
+    if (selectedColumns.isEmpty()) {
+      throw new IllegalArgumentException("No fields left to select with " + projection + " for: " + sql);
+    }
+
+    return "SELECT " + String.join(", ", selectedColumns) + " FROM (" + innerSql + ") q";
+  }
+
+  private static String stripTrailingSemicolons(String sql) {
+    String trimmed = sql.trim();
+    while (trimmed.endsWith(";")) {
+      trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+    }
+    return trimmed;
   }
 
   private static List<Map<String, String>> getResultListFromResultSet(ResultSet resultSet)
       throws SQLException {
     List<Map<String, String>> resultList = new ArrayList<>();
 
-    ResultSetMetaData metaData = resultSet.getMetaData();
-    int columnCount = metaData.getColumnCount();
+    String[] columnNames = getColumnNames(resultSet.getMetaData());
+    ColumnDictionary[] dictionaries = DictionaryEncoding.forColumns(columnNames);
     while (resultSet.next()) {
       Map<String, String> row = new LinkedHashMap<>();
-      for (int i = 1; i <= columnCount; i++) {
-        row.put(metaData.getColumnName(i), resultSet.getString(i));
+      for (int i = 1; i <= columnNames.length; i++) {
+        row.put(columnNames[i - 1], DictionaryEncoding.encode(dictionaries[i - 1], resultSet.getString(i)));
       }
       resultList.add(row);
     }
     return resultList;
   }
 
+  private static List<Map<String, String>> getSampledResultListFromResultSet(ResultSet resultSet,
+      String keyColumn, Sampling sampling) throws SQLException {
+    List<Map<String, String>> resultList = new ArrayList<>();
+
+    String[] columnNames = getColumnNames(resultSet.getMetaData());
+    ColumnDictionary[] dictionaries = DictionaryEncoding.forColumns(columnNames);
+    int keyIndex = resultSet.findColumn(keyColumn);
+    while (resultSet.next()) {
+      // Read the rest of the row only if its key is in the sample
+      if (!sampling.includes(resultSet.getString(keyIndex))) continue;
+
+      Map<String, String> row = new LinkedHashMap<>();
+      for (int i = 1; i <= columnNames.length; i++) {
+        row.put(columnNames[i - 1], DictionaryEncoding.encode(dictionaries[i - 1], resultSet.getString(i)));
+      }
+      resultList.add(row);
+    }
+    return resultList;
+  }
+
+  private static List<Map<String, Object>> getTypedResultListFromResultSet(ResultSet resultSet)
+      throws SQLException {
+    List<Map<String, Object>> resultList = new ArrayList<>();
+
+    // Read metadata once per result set (and not once per cell)
+    ResultSetMetaData metaData = resultSet.getMetaData();
+    String[] columnNames = getColumnNames(metaData);
+    ColumnDictionary[] dictionaries = DictionaryEncoding.forColumns(columnNames);
+    int[] columnTypes = new int[columnNames.length];
+    for (int i = 1; i <= columnNames.length; i++) {
+      columnTypes[i - 1] = metaData.getColumnType(i);
+    }
+
+    while (resultSet.next()) {
+      Map<String, Object> row = new LinkedHashMap<>();
+      for (int i = 1; i <= columnNames.length; i++) {
+        row.put(columnNames[i - 1], getTypedValue(resultSet, i, columnTypes[i - 1], dictionaries[i - 1]));
+      }
+      resultList.add(row);
+    }
+    return resultList;
+  }
+
+  private static String[] getColumnNames(ResultSetMetaData metaData) throws SQLException {
+    String[] columnNames = new String[metaData.getColumnCount()];
+    for (int i = 1; i <= columnNames.length; i++) {
+      columnNames[i - 1] = metaData.getColumnName(i);
+    }
+    return columnNames;
+  }
+
+  // The names the columns of a subquery are known by (the alias, where a driver's column name is the underlying name)
+  private static String[] getColumnLabels(ResultSetMetaData metaData) throws SQLException {
+    String[] columnLabels = new String[metaData.getColumnCount()];
+    for (int i = 1; i <= columnLabels.length; i++) {
+      columnLabels[i - 1] = metaData.getColumnLabel(i);
+    }
+    return columnLabels;
+  }
+
+  private static Object getTypedValue(ResultSet resultSet, int columnIndex, int columnType,
+      ColumnDictionary dictionary) throws SQLException {
+    Object value = switch (columnType) {
+      case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> resultSet.getInt(columnIndex);
+      case Types.BIGINT -> resultSet.getLong(columnIndex);
+      case Types.REAL, Types.FLOAT, Types.DOUBLE -> resultSet.getDouble(columnIndex);
+      case Types.DECIMAL, Types.NUMERIC -> resultSet.getBigDecimal(columnIndex);
+      case Types.BIT, Types.BOOLEAN -> resultSet.getBoolean(columnIndex);
+      case Types.DATE -> resultSet.getObject(columnIndex, LocalDate.class);
+      case Types.TIME -> resultSet.getObject(columnIndex, LocalTime.class);
+      case Types.TIMESTAMP -> resultSet.getObject(columnIndex, LocalDateTime.class);
+      case Types.TIMESTAMP_WITH_TIMEZONE -> resultSet.getObject(columnIndex, OffsetDateTime.class);
+      default -> DictionaryEncoding.encode(dictionary, resultSet.getString(columnIndex));
+    };
+    // Primitive getters return 0/false for SQL NULL
+    return resultSet.wasNull() ? null : value;
+  }
+
   // Run stored procedure with parameters
   public Map<String, String> runStoredProcedure(String sql, String... outputParameters) {
     try (Connection connection = getConnection();
@@ -216,16 +1042,11 @@ public class DBConnection {
 
   // Close connection pool
   public void closeConnectionPool() {
+    if (dataSource.isCompletedExceptionally()) {
+      log.warn("Hikari datasource pool was never initialized, nothing to close");
+      return;
+    }
     log.info("Closing Hikari datasource pool");
-    dataSource.close();
+    getDataSource().close();
   }
 }
-
-/**
- * Custom exception for SQL file reading errors.
- */
-class SqlFileReadException extends RuntimeException {
-    public SqlFileReadException(String message, Throwable cause) {
-        super(message, cause);
-    }
-}
\ No newline at end of file
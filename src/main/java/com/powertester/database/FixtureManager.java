@@ -0,0 +1,162 @@
+package com.powertester.database;
+
+import com.powertester.config.TestConfig;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Loads seed scripts (input.sql) fast. Each script runs only once per test run, keyed by a checksum
+ * of its content. The resulting tables are then snapshotted, and every later load of the same script
+ * (by another class, or by a repetition of a test) restores that snapshot in bulk instead of running
+ * the script statement by statement again.
+ *
+ * <p>On H2, a snapshot is a compressed SCRIPT of the seeded tables that is restored with RUNSCRIPT
+ * (which drops and re-creates them). Names in the snapshot are not schema qualified, so a snapshot
+ * taken in one (isolated) schema restores into the current schema of any later load. Other databases
+ * have no equivalent, so there the script is run again.
+ */
+@Slf4j
+public class FixtureManager {
+  private static final Pattern TABLE_NAME =
+      Pattern.compile("^\\s*(?:CREATE\\s+TABLE(?:\\s+IF\\s+NOT\\s+EXISTS)?|INSERT\\s+INTO)\\s+([\\w.\"]+)",
+          Pattern.CASE_INSENSITIVE);
+  private static final Path NO_SNAPSHOT = Paths.get("");
+  private static final FixtureManager INSTANCE = new FixtureManager(DBConnection.getInstance());
+
+  private final DBConnection db;
+  private final Path snapshotDirectory =
+      Paths.get(TestConfig.getInstance().getConfig().getString("FIXTURE_SNAPSHOT_DIR"));
+  // checksum of the seed script -> its snapshot (or NO_SNAPSHOT if the database can't snapshot)
+  private final Map<String, Path> snapshots = new ConcurrentHashMap<>();
+  private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+  /** Fixture manager that seeds through the given connection. It restores only the snapshots it took itself. */
+  public FixtureManager(DBConnection db) {
+    this.db = db;
+  }
+
+  public static FixtureManager getInstance() {
+    return INSTANCE;
+  }
+
+  /** Brings the tables of the seed script to the state right after running it (in the current schema). */
+  public void load(String sqlFilePath) {
+    String checksum = checksumOf(sqlFilePath);
+
+    // Loads of different scripts run in parallel, loads of the same script wait for the first one.
+    synchronized (locks.computeIfAbsent(checksum, key -> new Object())) {
+      Path snapshot = snapshots.get(checksum);
+      if (snapshot == null) {
+        long start = System.currentTimeMillis();
+        db.updateFromFile(sqlFilePath);
+        snapshots.put(checksum, createSnapshot(sqlFilePath, checksum));
+        log.info("Seeded {} in {} ms", sqlFilePath, System.currentTimeMillis() - start);
+      } else if (snapshot == NO_SNAPSHOT) {
+        db.updateFromFile(sqlFilePath);
+      } else {
+        long start = System.currentTimeMillis();
+        execute("RUNSCRIPT FROM '" + snapshot + "' COMPRESSION GZIP");
+        log.info("Restored {} from snapshot in {} ms", sqlFilePath, System.currentTimeMillis() - start);
+      }
+    }
+  }
+
+  private Path createSnapshot(String sqlFilePath, String checksum) {
+    if (!db.getDatabaseProductName().equalsIgnoreCase("H2")) {
+      return NO_SNAPSHOT;
+    }
+
+    Set<String> tables = tablesOf(sqlFilePath);
+    if (tables.isEmpty()) {
+      return NO_SNAPSHOT;
+    }
+
+    try {
+      Files.createDirectories(snapshotDirectory);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not create fixture snapshot directory: " + snapshotDirectory, e);
+    }
+    // DROP: the snapshot drops and re-creates its tables when restored
+    Path snapshot = snapshotDirectory.resolve(checksum + ".sql.gz").toAbsolutePath();
+    Path partialSnapshot = snapshot.resolveSibling(checksum + "-" + UUID.randomUUID() + ".sql.gz.part");
+    try (Connection connection = db.getConnection();
+        Statement statement = connection.createStatement();
+        ResultSet script = statement.executeQuery("SCRIPT NOPASSWORDS NOSETTINGS DROP TABLE "
+            + String.join(", ", tables));
+        Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(partialSnapshot)),
+            StandardCharsets.UTF_8)) {
+      String qualifier = "\"" + connection.getSchema().replace("\"", "\"\"") + "\".";
+      while (script.next()) {
+        String line = script.getString(1);
+        // The user and schema exist already, and the restore creates the tables in the current schema
+        if (line.startsWith("--") || line.startsWith("CREATE USER ") || line.startsWith("CREATE SCHEMA ")) continue;
+        // Lines of rows (of a multi-row INSERT) start with "(", and their values are kept as they are
+        writer.write(line.startsWith("(") ? line : line.replace(qualifier, ""));
+        writer.write('\n');
+      }
+    } catch (SQLException | IOException e) {
+      throw new IllegalStateException("Error creating fixture snapshot " + snapshot, e);
+    }
+
+    // Fixture managers of other data sources may snapshot the same script: never restore a partial file
+    try {
+      Files.move(partialSnapshot, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new IllegalStateException("Error creating fixture snapshot " + snapshot, e);
+    }
+    return snapshot;
+  }
+
+  // RUNSCRIPT may return a result set, so it doesn't go through DBConnection.update
+  private void execute(String sql) {
+    try (Connection connection = db.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.execute(sql);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Error executing fixture statement " + sql, e);
+    }
+  }
+
+  // Tables created or filled by the script, in order of appearance
+  private static Set<String> tablesOf(String sqlFilePath) {
+    Set<String> tables = new LinkedHashSet<>();
+    for (String statement : DBConnection.extractSqlStatements(sqlFilePath)) {
+      Matcher matcher = TABLE_NAME.matcher(statement);
+      if (matcher.find()) {
+        tables.add(matcher.group(1));
+      }
+    }
+    return tables;
+  }
+
+  private static String checksumOf(String sqlFilePath) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(Files.readAllBytes(Paths.get(sqlFilePath))));
+    } catch (IOException | NoSuchAlgorithmException e) {
+      throw new SqlFileReadException("Failed to read SQL file: " + sqlFilePath, e);
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.powertester.database;
+
+import com.powertester.compare.KeyOrderedRows;
+import com.powertester.compare.OpenKeyOrderedRows;
+import com.powertester.compare.SpillingRowStore;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Open database cursor over the rows of a query, ordered by key (see {@link
+ * DBConnection#openKeyOrderedCursor(String, String, String...)}). Rows are read one fetch at a time
+ * while they are compared, so the database side of a keyed compare needs no memory for its rows.
+ * The cursor holds its pooled connection until it is closed (the keyed compare closes it).
+ */
+@Slf4j
+public class KeyOrderedCursor implements KeyOrderedRows {
+  private final Connection connection;
+  private final PreparedStatement statement;
+  private final ResultSet resultSet;
+  private final Runnable onClose;
+  private final String keyColumn;
+  private final List<String> columns;
+  private final int keyIndex;
+  private boolean iterated;
+  private boolean closed;
+
+  KeyOrderedCursor(Connection connection, PreparedStatement statement, ResultSet resultSet, String keyColumn,
+      List<String> columns, Runnable onClose) {
+    this.connection = connection;
+    this.statement = statement;
+    this.resultSet = resultSet;
+    this.onClose = onClose;
+    this.columns = List.copyOf(columns);
+    int index = KeyOrderedRows.indexOfKey(columns, keyColumn);
+    if (index < 0) {
+      close();
+      throw new IllegalArgumentException("Key column " + keyColumn + " is not one of " + columns);
+    }
+    this.keyColumn = columns.get(index);
+    this.keyIndex = index;
+    OpenKeyOrderedRows.opened(this);
+  }
+
+  @Override
+  public List<String> getColumns() {
+    return columns;
+  }
+
+  @Override
+  public String getKeyColumn() {
+    return keyColumn;
+  }
+
+  @Override
+  public int getKeyIndex() {
+    return keyIndex;
+  }
+
+  /** The rows in key order. A cursor can be read only once. */
+  @Override
+  public Iterator<String[]> sortedIterator() {
+    if (iterated) {
+      throw new IllegalStateException("A key ordered cursor can be read only once");
+    }
+    iterated = true;
+    return new Iterator<>() {
+      private String[] next = readRow(null);
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public String[] next() {
+        if (next == null) throw new NoSuchElementException();
+        String[] current = next;
+        next = readRow(current);
+        return current;
+      }
+    };
+  }
+
+  /** Cancels the query, so the database stops producing the rows that will not be read. */
+  @Override
+  public void cancel() {
+    if (closed) return;
+    try {
+      statement.cancel();
+    } catch (SQLException e) {
+      log.warn("Could not cancel key ordered cursor", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (closed) return;
+    closed = true;
+    try {
+      onClose.run();
+    } finally {
+      closeQuietly(resultSet);
+      closeQuietly(statement);
+      closeQuietly(connection);
+      OpenKeyOrderedRows.closed(this);
+    }
+  }
+
+  private static void closeQuietly(AutoCloseable closeable) {
+    try {
+      closeable.close();
+    } catch (Exception e) {
+      log.warn("Could not close {} of key ordered cursor", closeable, e);
+    }
+  }
+
+  private String[] readRow(String[] previous) {
+    try {
+      if (!resultSet.next()) return null;
+      // No dictionary encoding: a cursor keeps no rows, so there is no heap to save
+      String[] values = new String[columns.size()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = resultSet.getString(i + 1);
+      }
+      // A merge join silently pairs the wrong rows if the database orders keys differently (collation)
+      if (previous != null && SpillingRowStore.KEY_ORDER.compare(previous[keyIndex], values[keyIndex]) > 0) {
+        throw new IllegalStateException("Database returned key " + values[keyIndex] + " after "
+            + previous[keyIndex] + ", which is not the key order of the compare (check the collation)");
+      }
+      return values;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Error reading key ordered cursor", e);
+    }
+  }
+}
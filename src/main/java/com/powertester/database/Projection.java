@@ -0,0 +1,76 @@
+package com.powertester.database;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The columns a compare is interested in. A projection is passed to the fetch layer ({@link
+ * DBConnection#query(String, Projection, String...)}, {@link
+ * com.powertester.utils.CsvUtils#convertCsvToListOfMap(String, Projection)}) so that ignored columns
+ * are never selected, transferred or stored, and to the table compare so that both sides agree on
+ * the fields. Field names are matched case insensitive (databases tend to upper case them).
+ */
+public class Projection {
+  private static final Projection ALL = new Projection(Set.of(), Set.of());
+
+  // An empty set of included fields means "all fields"
+  private final Set<String> includedFields;
+  private final Set<String> excludedFields;
+
+  private Projection(Collection<String> includedFields, Collection<String> excludedFields) {
+    this.includedFields = caseInsensitiveSetOf(includedFields);
+    this.excludedFields = caseInsensitiveSetOf(excludedFields);
+  }
+
+  public static Projection all() {
+    return ALL;
+  }
+
+  /** Only these fields are selected and compared. */
+  public static Projection including(String... fields) {
+    return including(Arrays.asList(fields));
+  }
+
+  public static Projection including(Collection<String> fields) {
+    if (fields.isEmpty()) {
+      throw new IllegalArgumentException("Include at least one field");
+    }
+    return new Projection(fields, Set.of());
+  }
+
+  /** All fields except these are selected and compared. */
+  public static Projection excluding(String... fields) {
+    return excluding(Arrays.asList(fields));
+  }
+
+  public static Projection excluding(Collection<String> fields) {
+    return fields.isEmpty() ? ALL : new Projection(Set.of(), fields);
+  }
+
+  public boolean isAll() {
+    return includedFields.isEmpty() && excludedFields.isEmpty();
+  }
+
+  public boolean isSelected(String field) {
+    if (excludedFields.contains(field)) return false;
+    return includedFields.isEmpty() || includedFields.contains(field);
+  }
+
+  public Set<String> getIncludedFields() {
+    return Collections.unmodifiableSet(includedFields);
+  }
+
+  @Override
+  public String toString() {
+    return "Projection{included=" + includedFields + ", excluded=" + excludedFields + "}";
+  }
+
+  private static Set<String> caseInsensitiveSetOf(Collection<String> fields) {
+    Set<String> set = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    set.addAll(fields);
+    return set;
+  }
+}
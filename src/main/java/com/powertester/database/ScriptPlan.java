@@ -0,0 +1,103 @@
+package com.powertester.database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the statements of a (seed) script into steps that run one after another. A step is either
+ * one statement that runs alone (DDL, or anything that is not a simple change of one table), or a
+ * run of INSERT, UPDATE and DELETE statements, grouped per table. The table groups of a step touch
+ * different tables, so they can run at the same time; within a group, the script order is kept.
+ */
+final class ScriptPlan {
+  private static final Pattern TABLE_CHANGE =
+      Pattern.compile("^\\s*(?:INSERT\\s+INTO|DELETE\\s+FROM|UPDATE)\\s+([\\w.\"]+)", Pattern.CASE_INSENSITIVE);
+  // A statement that reads from other tables depends on them, so it is not independent of other groups
+  private static final Pattern READS_TABLES = Pattern.compile("\\bSELECT\\b", Pattern.CASE_INSENSITIVE);
+  private static final Pattern FOREIGN_KEY = Pattern.compile("\\bREFERENCES\\b", Pattern.CASE_INSENSITIVE);
+
+  private ScriptPlan() {}
+
+  /** Steps of the script, each a list of statement groups (a step with one group runs on its own). */
+  static List<List<List<String>>> stepsOf(List<String> statements) {
+    List<List<List<String>>> steps = new ArrayList<>();
+    Map<String, List<String>> tableGroups = new LinkedHashMap<>();
+    for (String statement : statements) {
+      String table = changedTableOf(statement);
+      if (table != null) {
+        tableGroups.computeIfAbsent(table, key -> new ArrayList<>()).add(statement);
+        continue;
+      }
+
+      // A barrier: everything before it has finished, and nothing after it has started
+      if (!tableGroups.isEmpty()) {
+        steps.add(new ArrayList<>(tableGroups.values()));
+        tableGroups.clear();
+      }
+      steps.add(List.of(List.of(statement)));
+    }
+    if (!tableGroups.isEmpty()) {
+      steps.add(new ArrayList<>(tableGroups.values()));
+    }
+    return steps;
+  }
+
+  /**
+   * Inserts into a child table may not run before the inserts into its parent table, and that order
+   * is not visible in the statements themselves. Scripts with foreign keys thus run in script order.
+   * This only finds the foreign keys the script creates itself; see {@link #changedTablesOf(List)} for
+   * the tables to look up in the database.
+   */
+  static boolean hasForeignKeys(List<String> statements) {
+    return statements.stream().anyMatch(statement -> FOREIGN_KEY.matcher(statement).find());
+  }
+
+  /** The tables that the INSERT, UPDATE and DELETE statements of the script change (see tableOf). */
+  static Set<String> changedTablesOf(List<String> statements) {
+    Set<String> tables = new LinkedHashSet<>();
+    for (String statement : statements) {
+      String table = changedTableOf(statement);
+      if (table != null) tables.add(table);
+    }
+    return tables;
+  }
+
+  // The one table a statement changes, or null if it is not that simple
+  private static String changedTableOf(String statement) {
+    Matcher matcher = TABLE_CHANGE.matcher(statement);
+    if (!matcher.find() || READS_TABLES.matcher(statement).find()) {
+      return null;
+    }
+    return tableOf(matcher.group(1));
+  }
+
+  /**
+   * One name per table, however the script spells it: the schema is dropped (so emp and PUBLIC.emp are
+   * one table), an unquoted name is upper case (so emp and "EMP" are one table), and a quoted name is
+   * kept as quoted. Tables of the same name in different schemas thus share a group, which only costs
+   * parallelism.
+   */
+  static String tableOf(String qualifiedName) {
+    String name = qualifiedName.substring(lastSeparatorOf(qualifiedName) + 1);
+    return name.startsWith("\"") ? name.replace("\"", "") : name.toUpperCase(Locale.ROOT);
+  }
+
+  // Position of the last dot that is not inside quotes, or -1
+  private static int lastSeparatorOf(String qualifiedName) {
+    boolean quoted = false;
+    int separator = -1;
+    for (int i = 0; i < qualifiedName.length(); i++) {
+      char c = qualifiedName.charAt(i);
+      if (c == '"') quoted = !quoted;
+      else if (c == '.' && !quoted) separator = i;
+    }
+    return separator;
+  }
+}
@@ -0,0 +1,68 @@
+package com.powertester.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A statement that took longer than SLOW_QUERY_THRESHOLD_MS, with what is needed to diagnose it from
+ * the report alone: the SQL as sent, its bind values, where the time went, and the execution plan.
+ * A statement that failed after that long (for example, on QUERY_TIMEOUT_SECONDS) is one too.
+ */
+public class SlowQuery {
+  private final String sql;
+  private final List<String> bindValues;
+  private final long totalMillis;
+  private final long connectMillis; // check out a connection and prepare the statement
+  private final long executeMillis; // until the first row (or the update count) is available
+  private final long fetchMillis; // read all rows
+  private final String plan; // null if there is no plan (update, or no QUERY_TO_EXPLAIN for the database)
+  private final String error; // null if the statement succeeded
+
+  SlowQuery(String sql, List<String> bindValues, long totalMillis, long connectMillis, long executeMillis,
+      long fetchMillis, String plan, String error) {
+    this.sql = sql;
+    this.bindValues = Collections.unmodifiableList(new ArrayList<>(bindValues)); // bind values can be null
+    this.totalMillis = totalMillis;
+    this.connectMillis = connectMillis;
+    this.executeMillis = executeMillis;
+    this.fetchMillis = fetchMillis;
+    this.plan = plan;
+    this.error = error;
+  }
+
+  public String getSql() {
+    return sql;
+  }
+
+  public List<String> getBindValues() {
+    return bindValues;
+  }
+
+  public long getTotalMillis() {
+    return totalMillis;
+  }
+
+  public String getPlan() {
+    return plan;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  /** Plain text report, as attached to the Allure result of the test. */
+  public String toReport() {
+    return "SQL:\n" + sql + "\n\n"
+        + "Bind values: " + bindValues + "\n\n"
+        + "Timing (ms): total=" + getTotalMillis() + ", connect=" + connectMillis + ", execute=" + executeMillis
+        + ", fetch=" + fetchMillis + "\n\n"
+        + (error == null ? "" : "Failed: " + error + "\n\n")
+        + "Plan:\n" + (plan == null ? "(not available)" : plan) + "\n";
+  }
+
+  @Override
+  public String toString() {
+    return getTotalMillis() + " ms: " + sql;
+  }
+}
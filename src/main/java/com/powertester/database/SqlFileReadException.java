@@ -0,0 +1,10 @@
+package com.powertester.database;
+
+/**
+ * Custom exception for SQL file reading errors.
+ */
+class SqlFileReadException extends RuntimeException {
+    public SqlFileReadException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,77 @@
+package com.powertester.extensions;
+
+import com.powertester.database.ConnectionAdmission;
+import io.qameta.allure.Allure;
+import java.lang.reflect.Method;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+
+/**
+ * Admits a test only when the connections it declares (see {@link DatabaseConnections}) are free, and
+ * gives them back after the test. The time the test waited is added to its Allure result. The
+ * {@code @BeforeAll} and {@code @AfterAll} methods of the class (seed scripts, clean up) are admitted
+ * the same way, with the connections declared on the class.
+ */
+public class ConnectionAdmissionExtension implements BeforeEachCallback, AfterEachCallback, InvocationInterceptor {
+  private static final ExtensionContext.Namespace NAMESPACE =
+      ExtensionContext.Namespace.create(ConnectionAdmissionExtension.class);
+  private static final String PERMITS = "permits";
+
+  @Override
+  public void beforeEach(ExtensionContext context) throws InterruptedException {
+    int connections = AnnotationSupport.findAnnotation(context.getRequiredTestMethod(), DatabaseConnections.class)
+        .or(() -> AnnotationSupport.findAnnotation(context.getRequiredTestClass(), DatabaseConnections.class))
+        .map(DatabaseConnections::value)
+        .orElse(1);
+    if (connections < 1) return;
+
+    long start = System.currentTimeMillis();
+    int permits = ConnectionAdmission.getInstance().acquire(connections);
+    long waitMillis = System.currentTimeMillis() - start;
+    context.getStore(NAMESPACE).put(PERMITS, permits);
+
+    // Excluded, so that it does not change the history of the test in the Allure report
+    Allure.parameter("Connection queue wait (ms)", waitMillis, true);
+  }
+
+  @Override
+  public void interceptBeforeAllMethod(Invocation<Void> invocation,
+      ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) throws Throwable {
+    proceedAdmitted(invocation, extensionContext);
+  }
+
+  @Override
+  public void interceptAfterAllMethod(Invocation<Void> invocation,
+      ReflectiveInvocationContext<Method> invocationContext, ExtensionContext extensionContext) throws Throwable {
+    proceedAdmitted(invocation, extensionContext);
+  }
+
+  private static void proceedAdmitted(Invocation<Void> invocation, ExtensionContext context) throws Throwable {
+    int connections = AnnotationSupport.findAnnotation(context.getRequiredTestClass(), DatabaseConnections.class)
+        .map(DatabaseConnections::value)
+        .orElse(1);
+    if (connections < 1) {
+      invocation.proceed();
+      return;
+    }
+
+    int permits = ConnectionAdmission.getInstance().acquire(connections);
+    try {
+      invocation.proceed();
+    } finally {
+      ConnectionAdmission.getInstance().release(permits);
+    }
+  }
+
+  @Override
+  public void afterEach(ExtensionContext context) {
+    Integer permits = context.getStore(NAMESPACE).remove(PERMITS, Integer.class);
+    if (permits != null) {
+      ConnectionAdmission.getInstance().release(permits);
+    }
+  }
+}
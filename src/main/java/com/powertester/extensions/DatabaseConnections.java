@@ -0,0 +1,22 @@
+package com.powertester.extensions;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Declares how many pooled connections the annotated test (or each test of the annotated class) uses
+ * at the same time. A test only starts when that many connections are free (see {@link
+ * ConnectionAdmissionExtension}), so that parallel tests queue up fairly instead of timing out in the
+ * pool. An annotation on a method overrides the one on its class.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@ExtendWith(ConnectionAdmissionExtension.class)
+public @interface DatabaseConnections {
+  int value() default 1;
+}
@@ -0,0 +1,18 @@
+package com.powertester.extensions;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Runs the annotated test class in its own database schema, so that it can create, fill and drop
+ * tables with the same names as other classes running in parallel.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@ExtendWith(SchemaIsolationExtension.class)
+public @interface IsolatedSchema {}
@@ -0,0 +1,19 @@
+package com.powertester.extensions;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Runs each annotated test (or each test of the annotated class) in a transaction that is rolled
+ * back afterwards, so that the test needs no clean up SQL. Only data changes are rolled back, since
+ * most databases commit DDL implicitly.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Inherited
+@ExtendWith(TransactionRollbackExtension.class)
+public @interface RollbackTransaction {}
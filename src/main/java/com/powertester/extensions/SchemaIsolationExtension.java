@@ -0,0 +1,69 @@
+package com.powertester.extensions;
+
+import com.powertester.database.DBConnection;
+import java.util.Locale;
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * Gives each test class its own schema (see {@link IsolatedSchema}). The schema is set for the thread
+ * that runs the class (for @BeforeAll/@AfterAll) and for every thread that runs one of its tests, and
+ * the previous schema is restored afterwards, since a worker thread may pick up tests of other
+ * classes while it waits. Schemas are dropped in bulk at the end of the run (see TestRunListener).
+ */
+public class SchemaIsolationExtension
+    implements BeforeAllCallback, AfterAllCallback, BeforeEachCallback, AfterEachCallback {
+  private static final ExtensionContext.Namespace NAMESPACE =
+      ExtensionContext.Namespace.create(SchemaIsolationExtension.class);
+  private static final String PREVIOUS_SCHEMA = "previousSchema";
+  // Oracle limits names to 30 characters
+  private static final int MAX_SCHEMA_NAME_LENGTH = 30;
+
+  @Override
+  public void beforeAll(ExtensionContext context) {
+    String previousSchema = DBConnection.getInstance().useIsolatedSchema(schemaNameOf(context.getRequiredTestClass()));
+    storePreviousSchema(context, previousSchema);
+  }
+
+  @Override
+  public void beforeEach(ExtensionContext context) {
+    String previousSchema = DBConnection.getInstance().useIsolatedSchema(schemaNameOf(context.getRequiredTestClass()));
+    storePreviousSchema(context, previousSchema);
+  }
+
+  @Override
+  public void afterEach(ExtensionContext context) {
+    restorePreviousSchema(context);
+  }
+
+  @Override
+  public void afterAll(ExtensionContext context) {
+    restorePreviousSchema(context);
+  }
+
+  private static void storePreviousSchema(ExtensionContext context, String previousSchema) {
+    if (previousSchema != null) {
+      context.getStore(NAMESPACE).put(PREVIOUS_SCHEMA, previousSchema);
+    }
+  }
+
+  private static void restorePreviousSchema(ExtensionContext context) {
+    // Only look at this context's own store, not at the one of the (parent) class
+    String previousSchema = context.getStore(NAMESPACE).remove(PREVIOUS_SCHEMA, String.class);
+    DBConnection.getInstance().useSchema(previousSchema);
+  }
+
+  // Stable and unique per class, for example ISO_DBCONNECTIONPASSINGTEST_1A2B3C4D
+  private static String schemaNameOf(Class<?> testClass) {
+    String hash = String.format("%08X", testClass.getName().hashCode());
+    String simpleName = testClass.getSimpleName().replaceAll("\\W", "").toUpperCase(Locale.ROOT);
+    int maxSimpleNameLength = MAX_SCHEMA_NAME_LENGTH - "ISO__".length() - hash.length();
+    if (simpleName.length() > maxSimpleNameLength) {
+      simpleName = simpleName.substring(0, maxSimpleNameLength);
+    }
+    return "ISO_" + simpleName + "_" + hash;
+  }
+}
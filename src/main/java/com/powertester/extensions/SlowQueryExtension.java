@@ -0,0 +1,32 @@
+package com.powertester.extensions;
+
+import com.powertester.database.DBConnection;
+import com.powertester.database.SlowQuery;
+import io.qameta.allure.Allure;
+import java.util.List;
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * Attaches the statements of a test that took longer than SLOW_QUERY_THRESHOLD_MS (SQL, bind values,
+ * timing and execution plan) to the Allure result of that test, next to the table compare report.
+ */
+public class SlowQueryExtension implements BeforeEachCallback, AfterTestExecutionCallback {
+
+  @Override
+  public void beforeEach(ExtensionContext context) {
+    // Slow statements of class level setup (for example, seeding) are logged, but not attached to a test
+    DBConnection.getInstance().takeSlowQueries();
+  }
+
+  @Override
+  public void afterTestExecution(ExtensionContext context) {
+    List<SlowQuery> slowQueries = DBConnection.getInstance().takeSlowQueries();
+    for (int i = 0; i < slowQueries.size(); i++) {
+      SlowQuery slowQuery = slowQueries.get(i);
+      Allure.addAttachment(String.format("Slow query %d: %d ms", i + 1, slowQuery.getTotalMillis()),
+          "text/plain", slowQuery.toReport(), ".txt");
+    }
+  }
+}
@@ -2,6 +2,16 @@ package com.powertester.extensions;
 
 import org.junit.jupiter.api.extension.*;
 
+import com.powertester.compare.IncrementalCompare;
+import com.powertester.compare.KeyOrderedRows;
+import com.powertester.compare.OpenKeyOrderedRows;
+import com.powertester.compare.Sampling;
+import com.powertester.compare.SpillingRowStore;
+import com.powertester.compare.ValueComparator;
+import com.powertester.compare.ValueComparators;
+import com.powertester.config.TestConfig;
+import com.powertester.database.Projection;
+
 import io.qameta.allure.Allure;
 import lombok.extern.slf4j.Slf4j;
 
@@ -14,7 +24,7 @@ import java.util.*;
 
 @Slf4j
 public class TableCompareExtension
-        implements BeforeEachCallback, AfterTestExecutionCallback, AfterAllCallback {
+        implements BeforeEachCallback, AfterTestExecutionCallback, AfterEachCallback, AfterAllCallback {
 
     // Directory under Maven/Gradle target for reports
     private static final String REPORT_DIR = "test-reports";
@@ -22,23 +32,155 @@ public class TableCompareExtension
     // Thread-local storage so each test can safely pass its rows to the extension
     private static final ThreadLocal<Captured> TL_CAPTURED = new ThreadLocal<>();
 
-
-    public static void captureRows(List<Map<String, String>> expectedRows,
-            List<Map<String, String>> actualRows) {
-        TL_CAPTURED.set(new Captured(expectedRows, actualRows, null));
+    // Stop comparing after this many differences (0 = compare all rows). Override per test with limitDiffs.
+    private static final long MAX_DIFFS = TestConfig.getInstance().getConfig().getLong("MAX_DIFFS");
+    private static final ThreadLocal<Long> TL_MAX_DIFFS = new ThreadLocal<>();
+    // Differences the current test expects (for example, injected on purpose). Null: expect no differences.
+    private static final ThreadLocal<Long> TL_EXPECTED_DIFFS = new ThreadLocal<>();
+    // Rows listed in the report (0 = all), so a badly diverged large table can't fill the heap
+    private static final long REPORT_MAX_ROWS = TestConfig.getInstance().getConfig().getLong("REPORT_MAX_ROWS");
+    // Positional compare: list only the rows with differences (a keyed compare always does)
+    private static final boolean REPORT_ONLY_ROWS_WITH_DIFFS =
+            TestConfig.getInstance().getConfig().getBoolean("REPORT_ONLY_ROWS_WITH_DIFFS");
+
+    public static void captureRows(List<? extends Map<String, ?>> expectedRows,
+            List<? extends Map<String, ?>> actualRows) {
+        TL_CAPTURED.set(new Captured(expectedRows, actualRows, null, null));
     }
 
     /** Overload if you want custom ignored fields per test */
-    public static void captureRows(List<Map<String, String>> expectedRows,
-            List<Map<String, String>> actualRows,
+    public static void captureRows(List<? extends Map<String, ?>> expectedRows,
+            List<? extends Map<String, ?>> actualRows,
             Set<String> ignoredFields) {
-        TL_CAPTURED.set(new Captured(expectedRows, actualRows,ignoredFields));
+        TL_CAPTURED.set(new Captured(expectedRows, actualRows, toProjection(ignoredFields), null));
+    }
+
+    /**
+     * Overload if you want to compare only some fields. Pass the same projection to the fetch
+     * (DBConnection.query / CsvUtils.convertCsvToListOfMap) so that unneeded columns are never fetched.
+     */
+    public static void captureRows(List<? extends Map<String, ?>> expectedRows,
+            List<? extends Map<String, ?>> actualRows,
+            Projection projection) {
+        TL_CAPTURED.set(new Captured(expectedRows, actualRows, projection, null));
+    }
+
+    /**
+     * Overload if you want custom comparators (for example, numeric or temporal tolerances) per field.
+     * Fields without a comparator use {@link ValueComparators#defaultComparator()}.
+     */
+    public static void captureRows(List<? extends Map<String, ?>> expectedRows,
+            List<? extends Map<String, ?>> actualRows,
+            Set<String> ignoredFields,
+            Map<String, ValueComparator> comparators) {
+        TL_CAPTURED.set(new Captured(expectedRows, actualRows, toProjection(ignoredFields), comparators));
+    }
+
+    /**
+     * Overload for a sampled compare (see DBConnection.querySample). Rows are matched on the key
+     * column (in any order, unique per side), so a sampled key found on one side only is one missing
+     * or extra row, and the rows after it are still compared with the right rows. The report shows the
+     * sample size, the observed mismatch rate and its 95% upper confidence bound, plus the fraction and
+     * seed to reproduce the sample.
+     */
+    public static void captureSampledRows(List<? extends Map<String, String>> expectedRows,
+            List<? extends Map<String, String>> actualRows,
+            String keyColumn,
+            Sampling sampling) {
+        TL_CAPTURED.set(new Captured(null, null, null, null)
+                .withStores(toStore(keyColumn, expectedRows), toStore(keyColumn, actualRows))
+                .withSampling(sampling));
+    }
+
+    // A sample or an incremental window fits in memory. The store sorts it by key for the merge join.
+    private static SpillingRowStore toStore(String keyColumn, List<? extends Map<String, String>> rows) {
+        SpillingRowStore store = new SpillingRowStore(keyColumn);
+        rows.forEach(store::add);
+        return store;
+    }
+
+    /**
+     * Overload for an incremental compare (see DBConnection.queryIncremental). Rows of the window are
+     * matched on the key column (unique per side), so a row whose watermark differs between both sides
+     * (for example a load timestamp) is still compared with the right row. When the compare finds no
+     * differences, the upper watermark of its window is stored, so the next run starts from there.
+     */
+    public static void captureIncrementalRows(List<? extends Map<String, String>> expectedRows,
+            List<? extends Map<String, String>> actualRows,
+            String keyColumn,
+            IncrementalCompare incremental) {
+        TL_CAPTURED.set(new Captured(null, null, null, null)
+                .withStores(toStore(keyColumn, expectedRows), toStore(keyColumn, actualRows))
+                .withIncremental(incremental));
+    }
+
+    /**
+     * Overload for a keyed compare of tables of any size (see SpillingRowStore). Rows are matched on
+     * the key column instead of on their position, so both sides may come in any order. Rows missing
+     * on one side are reported as differences. Only rows with differences are listed in the report.
+     * The key must be unique on each side: the compare fails on a key that is on more than one row.
+     * A side can also be a key ordered database cursor (see DBConnection.openKeyOrderedCursor), which
+     * is then read while comparing. Both sides are closed (spilled runs deleted, cursors closed) after
+     * the compare.
+     */
+    public static void captureRowsByKey(KeyOrderedRows expectedRows, KeyOrderedRows actualRows) {
+        captureRowsByKey(expectedRows, actualRows, null, null);
+    }
+
+    public static void captureRowsByKey(KeyOrderedRows expectedRows, KeyOrderedRows actualRows,
+            Projection projection,
+            Map<String, ValueComparator> comparators) {
+        if (!expectedRows.getKeyColumn().equalsIgnoreCase(actualRows.getKeyColumn())) {
+            throw new IllegalArgumentException("Both row stores should have the same key column, but got "
+                    + expectedRows.getKeyColumn() + " and " + actualRows.getKeyColumn());
+        }
+        TL_CAPTURED.set(new Captured(null, null, projection, comparators).withStores(expectedRows, actualRows));
+    }
+
+    /**
+     * Stops the compare of the current test after this many differences (0 = compare all rows), instead
+     * of MAX_DIFFS from config. Once the limit is reached, the remaining rows are not compared, and the
+     * query of a key ordered database cursor that is still being read is cancelled. The test fails as
+     * it would without a limit.
+     */
+    public static void limitDiffs(long maxDiffs) {
+        if (maxDiffs < 0) {
+            throw new IllegalArgumentException("Max diffs should be 0 (no limit) or more, but was: " + maxDiffs);
+        }
+        TL_MAX_DIFFS.set(maxDiffs);
+    }
+
+    /**
+     * The compare of the current test passes when it finds exactly this many differences, instead of
+     * none. Meant for generated data with differences injected on purpose (see SyntheticDataGenerator).
+     */
+    public static void expectDiffs(long expectedDiffs) {
+        TL_EXPECTED_DIFFS.set(expectedDiffs);
+    }
+
+    private static long maxDiffs() {
+        Long maxDiffs = TL_MAX_DIFFS.get();
+        return maxDiffs == null ? MAX_DIFFS : maxDiffs;
+    }
+
+    private static boolean reachedMaxDiffs(long diffs, long maxDiffs) {
+        return maxDiffs > 0 && diffs >= maxDiffs;
+    }
+
+    private static boolean isListed(List<Row> rows) {
+        return REPORT_MAX_ROWS == 0 || rows.size() < REPORT_MAX_ROWS;
+    }
+
+    private static Projection toProjection(Set<String> ignoredFields) {
+        return ignoredFields == null ? Projection.all() : Projection.excluding(ignoredFields);
     }
     
     @Override
     public void beforeEach(ExtensionContext context) {
         // Clear any previous capture just in case the same thread is reused
         TL_CAPTURED.remove();
+        TL_MAX_DIFFS.remove();
+        TL_EXPECTED_DIFFS.remove();
     }
 
     @Override
@@ -50,10 +192,28 @@ public class TableCompareExtension
         }
 
         // Build comparison model
-        ComparisonResult result = compare(captured.expectedRows, captured.actualRows, captured.ignoredFields);
+        long maxDiffs = maxDiffs();
+        ComparisonResult result;
+        if (captured.expectedStore != null) {
+            try (KeyOrderedRows expectedStore = captured.expectedStore;
+                    KeyOrderedRows actualStore = captured.actualStore) {
+                result = compareByKey(expectedStore, actualStore, captured.projection, captured.comparators, maxDiffs);
+                // The rest of the rows is not needed: a database cursor stops producing them before it is closed
+                if (result.stoppedAtMaxDiffs) {
+                    expectedStore.cancel();
+                    actualStore.cancel();
+                }
+            }
+        } else {
+            result = compare(captured.expectedRows, captured.actualRows, captured.projection, captured.comparators,
+                    maxDiffs);
+        }
+        if (result.stoppedAtMaxDiffs) {
+            log.info("Stopped comparing after {} differences", result.diffs);
+        }
 
         // Render HTML
-        String html = renderHtml(context, result);
+        String html = renderHtml(context, result, captured);
 
         // Write file and get path
         Path reportPath = writeHtmlFile(context, html);
@@ -67,17 +227,46 @@ public class TableCompareExtension
             Allure.step("No table-compare HTML found at: " + report.getAbsolutePath());
         }
 
+        Long expectedDiffs = TL_EXPECTED_DIFFS.get();
+        if (expectedDiffs != null) {
+            TL_CAPTURED.remove();
+            if (result.diffs != expectedDiffs) {
+                throw new AssertionError("Table comparison failed: " + result.diffs + " differences found, but "
+                        + expectedDiffs + " expected. See HTML report: " + reportLink);
+            }
+            return;
+        }
+
         // Fail the test if there are any differences
         if (result.diffs > 0) {      
+            String sampleInfo = captured.sampling == null ? "" : "In a sample (" + captured.sampling + ") of "
+                    + result.rowsCompared + " rows, " + result.rowsWithDiffs + " rows differ. ";
+            String limitInfo = result.stoppedAtMaxDiffs
+                    ? "Stopped after " + result.rowsCompared + " rows (max diffs: " + maxDiffs + "). " : "";
             throw new AssertionError(
-                "Table comparison failed: " + result.diffs + " differences found. "
+                "Table comparison failed: " + result.diffs + " differences found. " + sampleInfo + limitInfo
                             + "See HTML report: " + reportLink);
         }
 
+        // Only a verified window moves the watermark forward
+        if (captured.incremental != null) {
+            captured.incremental.markVerified();
+        }
+
         // Cleanup
         TL_CAPTURED.remove();
     }
 
+    @Override
+    public void afterEach(ExtensionContext context) {
+        // Rows of a test that failed before its compare (or never captured them): release connections and spill files
+        int closed = OpenKeyOrderedRows.closeAll();
+        if (closed > 0) {
+            log.warn("Closed {} key ordered rows that the test left open", closed);
+        }
+        TL_CAPTURED.remove();
+    }
+
     @Override
     public void afterAll(ExtensionContext context) {
         // Could aggregate or add an index here if desired.
@@ -86,26 +275,50 @@ public class TableCompareExtension
     // --- Data classes ---
 
     private static class Captured {
-        final List<Map<String, String>> expectedRows;
-        final List<Map<String, String>> actualRows;
-        final Set<String> ignoredFields;
-
-        Captured(List<Map<String, String>> in, List<Map<String, String>> out, Set<String> ignored) {
+        final List<? extends Map<String, ?>> expectedRows;
+        final List<? extends Map<String, ?>> actualRows;
+        final Projection projection;
+        final Map<String, ValueComparator> comparators;
+        Sampling sampling; // null for a full compare
+        IncrementalCompare incremental; // null for a full compare
+        KeyOrderedRows expectedStore; // null for a positional compare of the row lists
+        KeyOrderedRows actualStore;
+
+        Captured(List<? extends Map<String, ?>> in, List<? extends Map<String, ?>> out, Projection projection,
+                Map<String, ValueComparator> comparators) {
             this.expectedRows = in == null ? List.of() : in;
             this.actualRows = out == null ? List.of() : out;
-            this.ignoredFields = ignored == null ? Set.of() : ignored;
+            this.projection = projection == null ? Projection.all() : projection;
+            this.comparators = comparators == null ? Map.of() : comparators;
+        }
+
+        Captured withSampling(Sampling sampling) {
+            this.sampling = sampling;
+            return this;
+        }
+
+        Captured withIncremental(IncrementalCompare incremental) {
+            this.incremental = incremental;
+            return this;
+        }
+
+        Captured withStores(KeyOrderedRows expectedStore, KeyOrderedRows actualStore) {
+            this.expectedStore = expectedStore;
+            this.actualStore = actualStore;
+            return this;
         }
     }
 
+    // Values are kept as they were fetched (typed). They are only turned into text when rendered.
     private static class Cell {
-        final String inputVal;
-        final String outputVal;
+        final Object inputVal;
+        final Object outputVal;
         final boolean equal;
 
-        Cell(String in, String out) {
+        Cell(Object in, Object out, boolean equal) {
             this.inputVal = in;
             this.outputVal = out;
-            this.equal = Objects.equals(in, out);
+            this.equal = equal;
         }
     }
 
@@ -120,24 +333,40 @@ public class TableCompareExtension
     private static class ComparisonResult {
         final List<String> fields; // order used in the table
         final List<Row> rows;
-        final int rowsCompared;
-        final int cellsCompared;
-        final int diffs;
-
-        ComparisonResult(List<String> fields, List<Row> rows, int rowsCompared, int cellsCompared, int diffs) {
+        final long rowsCompared;
+        final long cellsCompared;
+        final long diffs;
+        final long rowsWithDiffs;
+        // Keyed compare only: rows found on one side only (equal rows are then not listed in the report)
+        final boolean keyed;
+        long missingRows;
+        long extraRows;
+        // True when the compare stopped at the max diffs (rows after that were not compared)
+        boolean stoppedAtMaxDiffs;
+        // True when only rows with differences are listed
+        boolean onlyRowsWithDiffs;
+        // True when more rows should have been listed than REPORT_MAX_ROWS
+        boolean rowsLeftOut;
+
+        ComparisonResult(List<String> fields, List<Row> rows, long rowsCompared, long cellsCompared, long diffs,
+                long rowsWithDiffs, boolean keyed) {
             this.fields = fields;
             this.rows = rows;
             this.rowsCompared = rowsCompared;
             this.cellsCompared = cellsCompared;
             this.diffs = diffs;
+            this.rowsWithDiffs = rowsWithDiffs;
+            this.keyed = keyed;
         }
     }
 
     // --- Comparison logic ---
 
-    private static ComparisonResult compare(List<Map<String, String>> expectedRows,
-            List<Map<String, String>> actualRows,
-            Set<String> ignoredFields) {
+    private static ComparisonResult compare(List<? extends Map<String, ?>> expectedRows,
+            List<? extends Map<String, ?>> actualRows,
+            Projection projection,
+            Map<String, ValueComparator> comparators,
+            long maxDiffs) {
 
         // Compare up to the smaller of the two lists to allow for
         // comparison if there are differences in row sizes in input and output.
@@ -152,36 +381,169 @@ public class TableCompareExtension
             union.addAll(actualRows.get(i).keySet());
         }
 
-        // remove ignored fields
+        // remove ignored fields (normally already left out at fetch time)
         List<String> fields = union.stream()
-                .filter(k -> !ignoredFields.contains(k))
+                .filter(projection::isSelected)
                 .toList();
 
-        int diffs = 0;
-        int cellsCompared = 0;
+        // Resolve the comparator per field once (and not per cell)
+        ValueComparator[] fieldComparators = new ValueComparator[fields.size()];
+        for (int f = 0; f < fields.size(); f++) {
+            fieldComparators[f] = comparators.getOrDefault(fields.get(f), ValueComparators.defaultComparator());
+        }
+
+        long diffs = 0;
+        long rowsWithDiffs = 0;
+        long cellsCompared = 0;
         List<Row> rows = new ArrayList<>();
+        boolean stoppedAtMaxDiffs = false;
+        boolean rowsLeftOut = false;
 
+        boolean[] equal = new boolean[fields.size()];
         for (int i = 0; i < rowsCompared; i++) {
-            Map<String, String> inRow = expectedRows.get(i);
-            Map<String, String> outRow = actualRows.get(i);
-
-            List<Cell> cells = new ArrayList<>();
-            for (String fieldName : fields) {
-                String inVal = inRow.get(fieldName);
-                String outVal = outRow.get(fieldName);
-                Cell cell = new Cell(inVal, outVal);
-                cells.add(cell);
+            Map<String, ?> inRow = expectedRows.get(i);
+            Map<String, ?> outRow = actualRows.get(i);
+
+            long diffsBeforeRow = diffs;
+            for (int f = 0; f < fields.size(); f++) {
+                String fieldName = fields.get(f);
+                equal[f] = fieldComparators[f].isEqual(inRow.get(fieldName), outRow.get(fieldName));
+                cellsCompared++;
+                if (!equal[f]) diffs++;
+            }
+            if (diffs > diffsBeforeRow) {
+                rowsWithDiffs++;
+            }
+            // With REPORT_ONLY_ROWS_WITH_DIFFS, equal rows are not kept (nor turned into text) for the report
+            if (diffs > diffsBeforeRow || !REPORT_ONLY_ROWS_WITH_DIFFS) {
+                if (isListed(rows)) {
+                    List<Cell> cells = new ArrayList<>(fields.size());
+                    for (int f = 0; f < fields.size(); f++) {
+                        cells.add(new Cell(inRow.get(fields.get(f)), outRow.get(fields.get(f)), equal[f]));
+                    }
+                    rows.add(new Row(cells));
+                } else {
+                    rowsLeftOut = true;
+                }
+            }
+
+            if (reachedMaxDiffs(diffs, maxDiffs) && i < rowsCompared - 1) {
+                rowsCompared = i + 1;
+                stoppedAtMaxDiffs = true;
+            }
+        }
+
+        ComparisonResult result =
+                new ComparisonResult(fields, rows, rowsCompared, cellsCompared, diffs, rowsWithDiffs, false);
+        result.stoppedAtMaxDiffs = stoppedAtMaxDiffs;
+        result.onlyRowsWithDiffs = REPORT_ONLY_ROWS_WITH_DIFFS;
+        result.rowsLeftOut = rowsLeftOut;
+        return result;
+    }
+
+    // Merge join of both stores in key order (keys unique per side). Memory holds one row per side (plus the rows to report).
+    private static ComparisonResult compareByKey(KeyOrderedRows expectedStore,
+            KeyOrderedRows actualStore,
+            Projection projection,
+            Map<String, ValueComparator> comparators,
+            long maxDiffs) {
+
+        Set<String> union = new LinkedHashSet<>(expectedStore.getColumns());
+        union.addAll(actualStore.getColumns());
+        List<String> fields = union.stream()
+                .filter(projection::isSelected)
+                .toList();
+
+        // Resolve the column position (per side) and the comparator per field once
+        int[] expectedIndexes = new int[fields.size()];
+        int[] actualIndexes = new int[fields.size()];
+        ValueComparator[] fieldComparators = new ValueComparator[fields.size()];
+        for (int f = 0; f < fields.size(); f++) {
+            expectedIndexes[f] = expectedStore.getColumns().indexOf(fields.get(f));
+            actualIndexes[f] = actualStore.getColumns().indexOf(fields.get(f));
+            fieldComparators[f] = comparators.getOrDefault(fields.get(f), ValueComparators.defaultComparator());
+        }
+
+        long diffs = 0;
+        long rowsWithDiffs = 0;
+        long rowsCompared = 0;
+        long cellsCompared = 0;
+        long missingRows = 0;
+        long extraRows = 0;
+        List<Row> rows = new ArrayList<>();
+        boolean stoppedAtMaxDiffs = false;
+        boolean rowsLeftOut = false;
+
+        boolean[] equal = new boolean[fields.size()];
+        Iterator<String[]> expectedIterator = expectedStore.uniqueKeyIterator();
+        Iterator<String[]> actualIterator = actualStore.uniqueKeyIterator();
+        String[] expected = expectedIterator.hasNext() ? expectedIterator.next() : null;
+        String[] actual = actualIterator.hasNext() ? actualIterator.next() : null;
+
+        while (expected != null || actual != null) {
+            int order;
+            if (expected == null) {
+                order = 1;
+            } else if (actual == null) {
+                order = -1;
+            } else {
+                order = SpillingRowStore.KEY_ORDER.compare(expected[expectedStore.getKeyIndex()],
+                        actual[actualStore.getKeyIndex()]);
+            }
+            String[] inRow = order <= 0 ? expected : null;
+            String[] outRow = order >= 0 ? actual : null;
+            if (order < 0) missingRows++;
+            if (order > 0) extraRows++;
+
+            long diffsBeforeRow = diffs;
+            for (int f = 0; f < fields.size(); f++) {
+                // A row found on one side only differs in every field
+                equal[f] = order == 0 && fieldComparators[f].isEqual(valueAt(inRow, expectedIndexes[f]),
+                        valueAt(outRow, actualIndexes[f]));
                 cellsCompared++;
-                if (!cell.equal) diffs++;
+                if (!equal[f]) diffs++;
+            }
+            rowsCompared++;
+            if (diffs > diffsBeforeRow) {
+                rowsWithDiffs++;
+                if (isListed(rows)) {
+                    List<Cell> cells = new ArrayList<>(fields.size());
+                    for (int f = 0; f < fields.size(); f++) {
+                        cells.add(new Cell(valueAt(inRow, expectedIndexes[f]), valueAt(outRow, actualIndexes[f]),
+                                equal[f]));
+                    }
+                    rows.add(new Row(cells));
+                } else {
+                    rowsLeftOut = true;
+                }
+            }
+
+            if (order <= 0) expected = expectedIterator.hasNext() ? expectedIterator.next() : null;
+            if (order >= 0) actual = actualIterator.hasNext() ? actualIterator.next() : null;
+
+            if (reachedMaxDiffs(diffs, maxDiffs) && (expected != null || actual != null)) {
+                stoppedAtMaxDiffs = true;
+                break;
             }
-            rows.add(new Row(cells));
         }
 
-        return new ComparisonResult(fields, rows, rowsCompared, cellsCompared, diffs);
+        ComparisonResult result =
+                new ComparisonResult(fields, rows, rowsCompared, cellsCompared, diffs, rowsWithDiffs, true);
+        result.missingRows = missingRows;
+        result.extraRows = extraRows;
+        result.stoppedAtMaxDiffs = stoppedAtMaxDiffs;
+        result.onlyRowsWithDiffs = true;
+        result.rowsLeftOut = rowsLeftOut;
+        return result;
+    }
+
+    private static String valueAt(String[] row, int index) {
+        return row == null || index < 0 ? null : row[index];
     }
 
     // --- HTML rendering & output ---
-    private static String renderHtml(ExtensionContext testContext, ComparisonResult comparisonResult) {
+    private static String renderHtml(ExtensionContext testContext, ComparisonResult comparisonResult,
+            Captured captured) {
         String displayName = testContext.getDisplayName();
         String testName = testContext.getRequiredTestMethod().getName();
         String className = testContext.getRequiredTestClass().getSimpleName();
@@ -195,7 +557,28 @@ public class TableCompareExtension
 
         stringBuilder.append("<h1>Table Compare Report</h1>");
         stringBuilder.append(renderMetaInfo(className, testName, displayName, timestamp));
-        stringBuilder.append(renderLegend(comparisonResult.rowsCompared, comparisonResult.cellsCompared, comparisonResult.diffs));
+        stringBuilder.append(renderLegend(comparisonResult.rowsCompared, comparisonResult.cellsCompared, comparisonResult.diffs,
+                comparisonResult.onlyRowsWithDiffs));
+        if (captured.sampling != null) {
+            stringBuilder.append(renderSampleInfo(captured.sampling, comparisonResult.rowsCompared,
+                    comparisonResult.rowsWithDiffs));
+        }
+        if (captured.incremental != null) {
+            stringBuilder.append(renderIncrementalInfo(captured.incremental));
+        }
+        if (comparisonResult.keyed) {
+            stringBuilder.append(renderKeyedInfo(captured.expectedStore.getKeyColumn(), comparisonResult));
+        }
+        if (comparisonResult.stoppedAtMaxDiffs) {
+            stringBuilder.append("<div class='legend'><span class='badge' style='background:#ffcccc;'>"
+                    + "Stopped at max diffs: rows after the last listed row were not compared</span></div>");
+        }
+
+        if (comparisonResult.rowsLeftOut) {
+            stringBuilder.append("<div class='legend'><span class='badge' style='background:#ffcccc;'>"
+                    + "Listing the first " + comparisonResult.rows.size() + " rows (REPORT_MAX_ROWS), of "
+                    + comparisonResult.rowsWithDiffs + " rows with differences</span></div>");
+        }
 
         stringBuilder.append("<table>");
         stringBuilder.append(renderTableHeader(comparisonResult.fields));
@@ -229,13 +612,43 @@ public class TableCompareExtension
                 "</div>";
     }
 
-    private static String renderLegend(int rowsCompared, int cellsCompared, int diffs) {
+    private static String renderLegend(long rowsCompared, long cellsCompared, long diffs, boolean onlyRowsWithDiffs) {
         return "<div class='legend'>" +
                 "<span class='badge'>Rows: " + rowsCompared + "</span>" +
                 "<span class='badge'>Cells: " + cellsCompared + "</span>" +
                 "<span class='badge'>Diffs: " + diffs + "</span>" +
                 "<span class='badge' style='background:#fff;border:1px solid #ddd;'>Equal</span>" +
                 "<span class='badge' style='background:#ffcccc;'>Different</span>" +
+                (onlyRowsWithDiffs ? "<span class='badge'>Only rows with differences are listed</span>" : "") +
+                "</div>";
+    }
+
+    private static String renderSampleInfo(Sampling sampling, long sampleSize, long rowsWithDiffs) {
+        double mismatchRate = sampleSize == 0 ? 0 : (double) rowsWithDiffs / sampleSize;
+        double upperBound = Sampling.upperConfidenceBound(rowsWithDiffs, sampleSize);
+        return "<div class='legend'>" +
+                "<span class='badge'>Sample size: " + sampleSize + " rows</span>" +
+                "<span class='badge'>Observed mismatch rate: " + String.format("%.4f%%", mismatchRate * 100) + "</span>" +
+                "<span class='badge'>95% upper bound: " + String.format("%.4f%%", upperBound * 100) + "</span>" +
+                "<span class='badge'>Fraction: " + sampling.getFraction() + "</span>" +
+                "<span class='badge'>Seed: " + sampling.getSeed() + "</span>" +
+                "</div>";
+    }
+
+    private static String renderKeyedInfo(String keyColumn, ComparisonResult comparisonResult) {
+        return "<div class='legend'>" +
+                "<span class='badge'>Matched on key: " + escape(keyColumn) + "</span>" +
+                "<span class='badge'>Missing rows (expected only): " + comparisonResult.missingRows + "</span>" +
+                "<span class='badge'>Extra rows (actual only): " + comparisonResult.extraRows + "</span>" +
+                "</div>";
+    }
+
+    private static String renderIncrementalInfo(IncrementalCompare incremental) {
+        return "<div class='legend'>" +
+                "<span class='badge'>" + (incremental.isFullCompare() ? "Full compare" : "Incremental compare") + "</span>" +
+                "<span class='badge'>Watermark: " + escape(incremental.getWatermarkColumn()) + "</span>" +
+                "<span class='badge'>From (exclusive): " + escape(orEmpty(incremental.getFromWatermark())) + "</span>" +
+                "<span class='badge'>Up to: " + escape(orEmpty(incremental.getUpperWatermark())) + "</span>" +
                 "</div>";
     }
 
@@ -271,8 +684,8 @@ public class TableCompareExtension
         return sb.toString();
     }
 
-    private static String orEmpty(String rawInput) {
-        return rawInput == null ? "" : rawInput;
+    private static String orEmpty(Object rawInput) {
+        return rawInput == null ? "" : rawInput.toString();
     }
 
     private static String escape(String rawInput) {
@@ -0,0 +1,24 @@
+package com.powertester.extensions;
+
+import com.powertester.database.DBConnection;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * Pins one pooled connection to each test (see {@link RollbackTransaction}). The connection is only
+ * checked out at the first statement of the test, so it also picks up the schema of the test (see
+ * {@link IsolatedSchema}), and all statements of the test are rolled back after it.
+ */
+public class TransactionRollbackExtension implements BeforeEachCallback, AfterEachCallback {
+
+  @Override
+  public void beforeEach(ExtensionContext context) {
+    DBConnection.getInstance().pinConnection();
+  }
+
+  @Override
+  public void afterEach(ExtensionContext context) {
+    DBConnection.getInstance().rollbackPinnedConnection();
+  }
+}
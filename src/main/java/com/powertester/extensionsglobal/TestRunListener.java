@@ -10,6 +10,7 @@ import java.nio.file.Paths;
 import org.junit.platform.launcher.LauncherSession;
 import org.junit.platform.launcher.LauncherSessionListener;
 
+import com.powertester.database.ConnectionAdmission;
 import com.powertester.database.DBConnection;
 
 import lombok.extern.slf4j.Slf4j;
@@ -30,7 +31,7 @@ public class TestRunListener implements LauncherSessionListener {
 
     testRunStartTime = System.currentTimeMillis();
 
-    // Initialize DB connection pool
+    // Start the DB connection pool (it warms up in the background while the tests are discovered)
     DBConnection.getInstance();
 
     // Create test report directory if it doesn't exist
@@ -48,6 +49,11 @@ public class TestRunListener implements LauncherSessionListener {
    */
   @Override
   public void launcherSessionClosed(LauncherSession session) {
+    // Drop isolated schemas of all test classes in bulk (before the pool is closed)
+    DBConnection.getInstance().dropIsolatedSchemas();
+
+    log.info("Connection admission: {}", ConnectionAdmission.getInstance().getQueueWaitSummary());
+
     log.info("✅ Closing Hikari datasource pool (only once) at the end of the whole test run"); 
     DBConnection.getInstance().closeConnectionPool();
 
@@ -1,5 +1,10 @@
 package com.powertester.utils;
 
+import com.powertester.compare.ColumnDictionary;
+import com.powertester.compare.DictionaryEncoding;
+import com.powertester.compare.SpillingRowStore;
+import com.powertester.database.Projection;
+
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVPrinter;
@@ -9,6 +14,9 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class CsvUtils {
@@ -18,6 +26,12 @@ public class CsvUtils {
 
     // Read CSV into List<Map<String, String>>
     public static List<Map<String, String>> convertCsvToListOfMap(String filePath) throws IOException {
+        return convertCsvToListOfMap(filePath, Projection.all());
+    }
+
+    // Read CSV into List<Map<String, String>>, keeping only the columns of the projection
+    public static List<Map<String, String>> convertCsvToListOfMap(String filePath, Projection projection)
+            throws IOException {
         List<Map<String, String>> rows = new ArrayList<>();
 
         CSVFormat csvFormat = CSVFormat.Builder.create()
@@ -27,10 +41,22 @@ public class CsvUtils {
 
         try (Reader reader = new FileReader(filePath);
              CSVParser csvParser = CSVParser.parse(reader, csvFormat)) {
+            // Resolve selected headers (and their positions) once, instead of per row
+            List<String> headers = new ArrayList<>();
+            List<Integer> positions = new ArrayList<>();
+            List<ColumnDictionary> dictionaries = new ArrayList<>();
+            for (Map.Entry<String, Integer> header : csvParser.getHeaderMap().entrySet()) {
+                if (projection.isSelected(header.getKey())) {
+                    headers.add(header.getKey());
+                    positions.add(header.getValue());
+                    dictionaries.add(DictionaryEncoding.forColumn(header.getKey()));
+                }
+            }
+
             for (CSVRecord csvRow : csvParser) {
                 Map<String, String> row = new LinkedHashMap<>();
-                for (String header : csvParser.getHeaderMap().keySet()) {
-                    row.put(header, csvRow.get(header));
+                for (int i = 0; i < headers.size(); i++) {
+                    row.put(headers.get(i), DictionaryEncoding.encode(dictionaries.get(i), csvRow.get(positions.get(i))));
                 }
                 rows.add(row);
             }
@@ -38,6 +64,58 @@ public class CsvUtils {
         return rows;
     }
 
+    // Read CSV into a row store (for a keyed compare of files larger than the heap)
+    public static void readCsvIntoStore(String filePath, SpillingRowStore store) throws IOException {
+        CSVFormat csvFormat = CSVFormat.Builder.create()
+                .setHeader()
+                .setSkipHeaderRecord(false)
+                .get();
+
+        try (Reader reader = new FileReader(filePath);
+             CSVParser csvParser = CSVParser.parse(reader, csvFormat)) {
+            store.setColumns(csvParser.getHeaderNames());
+            int columnCount = csvParser.getHeaderNames().size();
+            ColumnDictionary[] dictionaries = DictionaryEncoding.forColumns(csvParser.getHeaderNames().toArray(new String[0]));
+            for (CSVRecord csvRow : csvParser) {
+                String[] values = new String[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    values[i] = DictionaryEncoding.encode(dictionaries[i], csvRow.get(i));
+                }
+                store.add(values);
+            }
+        }
+    }
+
+    /**
+     * External merge sort of an (unsorted) CSV file by its key column: fixed size chunks are sorted in
+     * parallel and spilled to temporary files, and the returned store streams their k-way merge in key
+     * order. Memory is bounded by ROW_STORE_MAX_ROWS_IN_MEMORY, whatever the size of the file.
+     */
+    public static SpillingRowStore readCsvSortedByKey(String filePath, String keyColumn) throws IOException {
+        SpillingRowStore store = new SpillingRowStore(keyColumn);
+        readCsvIntoStore(filePath, store);
+        return store;
+    }
+
+    // Append one row to a CSV file (for example, a trend file). The header is written when the file is new.
+    public static void appendRowToCsvFile(String filePath, Map<String, String> row) throws IOException {
+        Path path = Paths.get(filePath);
+        boolean newFile = !Files.exists(path);
+        if (newFile && path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        CSVFormat csvFormat = CSVFormat.Builder.create()
+                .setHeader(row.keySet().toArray(new String[0]))
+                .setSkipHeaderRecord(!newFile)
+                .get();
+
+        try (FileWriter writer = new FileWriter(filePath, true);
+             CSVPrinter csvPrinter = new CSVPrinter(writer, csvFormat)) {
+            csvPrinter.printRecord(row.values());
+        }
+    }
+
     // Write List<Map<String, String>> to CSV
     public static void saveDataToCsvFile(String filePath, List<Map<String, String>> data) throws IOException {
         if (data.isEmpty()) return;
@@ -0,0 +1,119 @@
+package com.powertester.utils;
+
+import com.powertester.database.DBConnection;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fills a source and a target table with the same synthetic rows, and changes one field in a
+ * controlled fraction of the target rows. The same seed always generates the same rows and the same
+ * differences, so runs (and releases) can be compared. Used for scale benchmarks of the compare path.
+ */
+@Slf4j
+public class SyntheticDataGenerator {
+  private static final String[] FIRST_NAMES = {"Ava", "Liam", "Mia", "Noah", "Emma", "Lucas", "Sara", "Omar"};
+  private static final String[] LAST_NAMES = {"Smith", "Jansen", "Kumar", "Garcia", "Müller", "Chen", "Ali"};
+  private static final String[] GENDERS = {"Male", "Female", "Other"};
+  private static final LocalDateTime START = LocalDateTime.of(2020, 1, 1, 0, 0);
+  private static final int BATCH_SIZE = 10_000;
+
+  private final DBConnection db;
+  private final long seed;
+  private final double diffRate;
+
+  /**
+   * @param db database to create the tables in
+   * @param seed seed of the generated rows and differences
+   * @param diffRate fraction of target rows (0 to 1) with one changed field
+   */
+  public SyntheticDataGenerator(DBConnection db, long seed, double diffRate) {
+    if (!(diffRate >= 0 && diffRate <= 1)) {
+      throw new IllegalArgumentException("Diff rate should be in [0, 1], but was: " + diffRate);
+    }
+    this.db = db;
+    this.seed = seed;
+    this.diffRate = diffRate;
+  }
+
+  /** (Re-)creates both tables with {@code rows} rows each. Returns the number of injected differences. */
+  public long generate(String sourceTable, String targetTable, long rows) {
+    createTable(sourceTable);
+    createTable(targetTable);
+
+    long start = System.currentTimeMillis();
+    long injectedDiffs = 0;
+    SplittableRandom rowRandom = new SplittableRandom(seed);
+    SplittableRandom diffRandom = new SplittableRandom(seed ^ 0x5DEECE66DL);
+    try (Connection connection = db.getConnection();
+        PreparedStatement source = connection.prepareStatement(insertInto(sourceTable));
+        PreparedStatement target = connection.prepareStatement(insertInto(targetTable))) {
+      connection.setAutoCommit(false);
+      Object[] row = new Object[7];
+      for (long id = 1; id <= rows; id++) {
+        fillRow(row, id, rowRandom);
+        addBatch(source, row);
+        if (diffRandom.nextDouble() < diffRate) {
+          injectDiff(row, diffRandom);
+          injectedDiffs++;
+        }
+        addBatch(target, row);
+
+        if (id % BATCH_SIZE == 0 || id == rows) {
+          source.executeBatch();
+          target.executeBatch();
+          connection.commit();
+        }
+      }
+      connection.setAutoCommit(true);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Error generating " + rows + " rows into " + sourceTable + " and "
+          + targetTable, e);
+    }
+
+    log.info("Generated {} rows ({} differences) in {} ms", rows, injectedDiffs, System.currentTimeMillis() - start);
+    return injectedDiffs;
+  }
+
+  private void createTable(String table) {
+    db.update("DROP TABLE IF EXISTS " + table);
+    db.update("CREATE TABLE " + table + " (id BIGINT PRIMARY KEY, first_name VARCHAR(50), last_name VARCHAR(50),"
+        + " age INT, gender VARCHAR(10), amount DECIMAL(12,2), updated_at TIMESTAMP)");
+  }
+
+  private static String insertInto(String table) {
+    return "INSERT INTO " + table + " (id, first_name, last_name, age, gender, amount, updated_at)"
+        + " VALUES (?, ?, ?, ?, ?, ?, ?)";
+  }
+
+  private static void fillRow(Object[] row, long id, SplittableRandom random) {
+    row[0] = id;
+    row[1] = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+    row[2] = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+    row[3] = 18 + random.nextInt(70);
+    row[4] = GENDERS[random.nextInt(GENDERS.length)];
+    row[5] = BigDecimal.valueOf(random.nextLong(1_000_000_00L), 2);
+    row[6] = Timestamp.valueOf(START.plusSeconds(random.nextLong(150_000_000L)));
+  }
+
+  // Changes exactly one field (not the key), so every injected difference is one different cell
+  private static void injectDiff(Object[] row, SplittableRandom random) {
+    switch (random.nextInt(3)) {
+      case 0 -> row[3] = (Integer) row[3] + 1;
+      case 1 -> row[5] = ((BigDecimal) row[5]).add(BigDecimal.ONE);
+      default -> row[2] = row[2] + "x";
+    }
+  }
+
+  private static void addBatch(PreparedStatement statement, Object[] row) throws SQLException {
+    for (int i = 0; i < row.length; i++) {
+      statement.setObject(i + 1, row[i]);
+    }
+    statement.addBatch();
+  }
+}
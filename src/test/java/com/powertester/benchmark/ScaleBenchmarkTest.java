@@ -0,0 +1,152 @@
+package com.powertester.benchmark;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.api.parallel.Isolated;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import com.typesafe.config.Config;
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+import com.powertester.compare.SpillingRowStore;
+import com.powertester.config.TestConfig;
+import com.powertester.database.DBConnection;
+import com.powertester.extensions.TableCompareExtension;
+import com.powertester.utils.CsvUtils;
+import com.powertester.utils.SyntheticDataGenerator;
+
+/**
+ * Scale suite: generates source and target tables of 1M, 10M and 100M rows (SCALE_BENCHMARK_ROWS) in
+ * an H2 file database, with a controlled rate of injected differences, and runs the whole keyed
+ * compare path on them (DBConnection fetch, TableCompareExtension compare and HTML report). Per size,
+ * the wall time, throughput and peak heap are appended to the trend file, to diff between releases.
+ *
+ * <p>Not part of the default build. Run with: mvn test -Pscale (add -DSCALE_BENCHMARK_ROWS=100000 for a
+ * quick run).
+ */
+@Slf4j
+@Tag("scale")
+@Isolated
+@Execution(ExecutionMode.SAME_THREAD)
+class ScaleBenchmarkTest {
+    private static final Config CONFIG = TestConfig.getInstance().getConfig();
+    private static DBConnection db;
+
+    // Set by the benchmark, written to the trend file once the compare (after the test method) is done
+    private static long rows;
+    private static long injectedDiffs;
+    private static long generateMillis;
+    private static long fetchStart;
+
+    @RegisterExtension
+    static final AfterEachCallback TREND_WRITER = context -> {
+        long compareMillis = System.currentTimeMillis() - fetchStart;
+        if (context.getExecutionException().isPresent()) {
+            log.warn("Benchmark of {} rows failed, not added to the trend file", rows);
+            return;
+        }
+
+        Map<String, String> trend = new LinkedHashMap<>();
+        trend.put("timestamp", LocalDateTime.now().withNano(0).toString());
+        trend.put("version", System.getProperty("project.version", "unknown"));
+        trend.put("java", System.getProperty("java.version"));
+        trend.put("db_url", CONFIG.getString("SCALE_BENCHMARK_DB_URL"));
+        trend.put("rows", String.valueOf(rows));
+        trend.put("injected_diffs", String.valueOf(injectedDiffs));
+        trend.put("generate_ms", String.valueOf(generateMillis));
+        trend.put("fetch_compare_report_ms", String.valueOf(compareMillis));
+        trend.put("rows_per_second", String.valueOf(compareMillis == 0 ? 0 : rows * 1000 / compareMillis));
+        trend.put("peak_heap_mb", String.valueOf(peakHeapBytes() / (1024 * 1024)));
+        CsvUtils.appendRowToCsvFile(CONFIG.getString("SCALE_BENCHMARK_TREND_FILE"), trend);
+        log.info("Benchmark of {} rows: {}", rows, trend);
+    };
+
+    @BeforeAll
+    static void createDatabase() {
+        // A database of its own (file or server mode), next to the in-memory database of the other tests
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(CONFIG.getString("SCALE_BENCHMARK_DB_URL"));
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        dataSource.setMaximumPoolSize(4);
+        dataSource.setPoolName("ScaleBenchmark");
+        db = new DBConnection(dataSource);
+    }
+
+    static LongStream sizes() {
+        return Arrays.stream(CONFIG.getString("SCALE_BENCHMARK_ROWS").split(","))
+                .map(String::trim)
+                .mapToLong(Long::parseLong);
+    }
+
+    @ParameterizedTest(name = "{0} rows")
+    @MethodSource("sizes")
+    void compareGeneratedSourceAndTargetByKey(long size) {
+        // Arrange: same seed, same rows and differences on every run
+        rows = size;
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(db, CONFIG.getLong("SCALE_BENCHMARK_SEED"),
+                CONFIG.getDouble("SCALE_BENCHMARK_DIFF_RATE"));
+        long start = System.currentTimeMillis();
+        injectedDiffs = generator.generate("scale_source", "scale_target", size);
+        generateMillis = System.currentTimeMillis() - start;
+
+        // Assert: fetch both sides (bounded memory), the compare and report run after this method
+        resetPeakHeap();
+        fetchStart = System.currentTimeMillis();
+        SpillingRowStore expectedRows = new SpillingRowStore("ID");
+        SpillingRowStore actualRows = new SpillingRowStore("ID");
+        db.queryIntoStore("SELECT * FROM scale_source", expectedRows);
+        db.queryIntoStore("SELECT * FROM scale_target", actualRows);
+        assertEquals(expectedRows.size(), actualRows.size());
+
+        // Every injected difference is one different cell
+        TableCompareExtension.expectDiffs(injectedDiffs);
+        TableCompareExtension.captureRowsByKey(expectedRows, actualRows);
+    }
+
+    @AfterAll
+    static void tearDownAll() {
+        db.update("DROP TABLE IF EXISTS scale_source");
+        db.update("DROP TABLE IF EXISTS scale_target");
+        db.closeConnectionPool();
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    // Sum of the peaks of the heap pools (an upper bound: pools don't all peak at the same moment)
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,54 @@
+package com.powertester.compare;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnDictionaryTest {
+    @Test
+    void encodeReturnsOneInstancePerDistinctValue() {
+        ColumnDictionary dictionary = new ColumnDictionary("GENDER", 3);
+        String male = dictionary.encode(new String("Male"));
+
+        assertSame(male, dictionary.encode(new String("Male")));
+        assertEquals("Female", dictionary.encode("Female"));
+        assertNull(dictionary.encode(null));
+        assertTrue(dictionary.isEnabled());
+    }
+
+    @Test
+    void encodeSwitchesOffForAHighCardinalityColumn() {
+        ColumnDictionary dictionary = new ColumnDictionary("NAME", 2);
+        dictionary.encode("Ava");
+        dictionary.encode("Liam");
+        String mia = new String("Mia");
+
+        // The third distinct value is one too many: the value is kept as it is, and so are later ones
+        assertSame(mia, dictionary.encode(mia));
+        assertFalse(dictionary.isEnabled());
+        String ava = new String("Ava");
+        assertSame(ava, dictionary.encode(ava));
+    }
+
+    @Test
+    void eachFetchGetsDictionariesOfItsOwn() {
+        // A high cardinality NAME column in one fetch ...
+        ColumnDictionary[] firstFetch = DictionaryEncoding.forColumns(new String[] {"NAME"});
+        for (int i = 0; i < 1000; i++) {
+            firstFetch[0].encode("Name " + i);
+        }
+        assertFalse(firstFetch[0].isEnabled());
+
+        // ... doesn't switch encoding off for the NAME column of a later fetch
+        ColumnDictionary[] laterFetch = DictionaryEncoding.forColumns(new String[] {"NAME"});
+        assertNotSame(firstFetch[0], laterFetch[0]);
+        assertTrue(laterFetch[0].isEnabled());
+        String ava = laterFetch[0].encode(new String("Ava"));
+        assertSame(ava, laterFetch[0].encode(new String("Ava")));
+    }
+}
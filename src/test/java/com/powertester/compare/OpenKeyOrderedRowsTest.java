@@ -0,0 +1,42 @@
+package com.powertester.compare;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+class OpenKeyOrderedRowsTest {
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void closeAllClosesStoresThatWereLeftOpen() throws IOException {
+        // A store that spilled, and was never handed to a compare (as when a test fails before it)
+        SpillingRowStore store = new SpillingRowStore("ID", 1, spillDirectory);
+        store.setColumns(List.of("ID", "NAME"));
+        store.add(new String[] {"2", "Jane"});
+        store.add(new String[] {"1", "John"});
+        store.sortedIterator();
+        assertEquals(2, runFileCount());
+
+        // A store that was closed is not closed again
+        SpillingRowStore closedStore = new SpillingRowStore("ID", 1, spillDirectory);
+        closedStore.close();
+
+        assertEquals(1, OpenKeyOrderedRows.closeAll());
+        assertEquals(0, runFileCount());
+        assertEquals(0, OpenKeyOrderedRows.closeAll());
+    }
+
+    private long runFileCount() throws IOException {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.count();
+        }
+    }
+}
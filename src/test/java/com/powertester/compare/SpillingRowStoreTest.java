@@ -0,0 +1,90 @@
+package com.powertester.compare;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+class SpillingRowStoreTest {
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    void sortedIteratorMergesManyRunsInPassesOfBoundedFanIn() throws IOException {
+        // 3 rows per run and at most 4 runs per merge: 33 runs take two merge passes (33 -> 9 -> 3)
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            keys.add(String.format("%03d", i));
+        }
+        Collections.shuffle(keys, new Random(42));
+
+        try (SpillingRowStore store = new SpillingRowStore("ID", 3, 4, spillDirectory)) {
+            store.setColumns(List.of("ID", "NAME"));
+            for (String key : keys) {
+                store.add(new String[] {key, "Name " + key});
+            }
+            assertEquals(33, store.getSpilledRunCount());
+
+            List<String> sortedKeys = new ArrayList<>();
+            Iterator<String[]> rows = store.sortedIterator();
+            while (rows.hasNext()) {
+                String[] row = rows.next();
+                assertEquals("Name " + row[0], row[1]);
+                sortedKeys.add(row[0]);
+            }
+
+            Collections.sort(keys);
+            assertEquals(keys, sortedKeys);
+            // The final merge reads at most 3 runs (plus the rows in memory)
+            assertEquals(3, runFileCount());
+        }
+        assertEquals(0, runFileCount());
+    }
+
+    @Test
+    void keyColumnIsMatchedCaseInsensitive() {
+        // As a key ordered cursor does, so a key "id" works against a CSV header or query column "ID"
+        try (SpillingRowStore store = new SpillingRowStore("id", 10, spillDirectory)) {
+            store.setColumns(List.of("NAME", "ID"));
+
+            assertEquals("ID", store.getKeyColumn());
+            assertEquals(1, store.getKeyIndex());
+        }
+    }
+
+    @Test
+    void uniqueKeyIteratorFailsOnAKeyOnMoreThanOneRow() {
+        // The duplicate rows end up in different spilled runs
+        try (SpillingRowStore store = new SpillingRowStore("ID", 2, 4, spillDirectory)) {
+            store.setColumns(List.of("ID", "NAME"));
+            store.add(new String[] {"1", "Pen"});
+            store.add(new String[] {"2", "Ink"});
+            store.add(new String[] {"3", "Paper"});
+            store.add(new String[] {"2", "Stapler"});
+
+            Iterator<String[]> rows = store.uniqueKeyIterator();
+            assertEquals("1", rows.next()[0]);
+            assertEquals("2", rows.next()[0]);
+            IllegalStateException exception = assertThrows(IllegalStateException.class, rows::next);
+            assertTrue(exception.getMessage().contains("ID = 2"), exception.getMessage());
+        }
+    }
+
+    private long runFileCount() throws IOException {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.powertester.compare;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+class ValueComparatorsTest {
+    private final ValueComparator defaultComparator = ValueComparators.defaultComparator();
+
+    @Test
+    void defaultComparatorComparesTextsExactly() {
+        // A lost leading zero or a reformatted number is a difference when both sides are text
+        assertFalse(defaultComparator.isEqual("007", "7"));
+        assertFalse(defaultComparator.isEqual("1.0", "1"));
+        assertFalse(defaultComparator.isEqual("1E+2", "100"));
+        assertFalse(defaultComparator.isEqual("2024-01-31 10:15:30", "2024-01-31T10:15:30"));
+        assertTrue(defaultComparator.isEqual("007", "007"));
+    }
+
+    @Test
+    void defaultComparatorComparesTypedValuesByValue() {
+        assertTrue(defaultComparator.isEqual("30", 30));
+        assertTrue(defaultComparator.isEqual("30", new BigDecimal("30.00")));
+        assertTrue(defaultComparator.isEqual("2024-01-31 10:15:30", LocalDateTime.of(2024, 1, 31, 10, 15, 30)));
+        assertFalse(defaultComparator.isEqual("31", 30));
+        assertFalse(defaultComparator.isEqual(null, 30));
+    }
+
+    @Test
+    void numericComparatorComparesTextsByValueWithinTolerance() {
+        ValueComparator numeric = ValueComparators.numeric(new BigDecimal("0.01"));
+
+        assertTrue(numeric.isEqual("007", "7"));
+        assertTrue(numeric.isEqual("30.004", new BigDecimal("30.00")));
+        assertTrue(numeric.isEqual(30.01, 30));
+        assertFalse(numeric.isEqual("30.02", new BigDecimal("30.00")));
+        assertFalse(numeric.isEqual("abc", "abc "));
+    }
+
+    @Test
+    void temporalComparatorComparesDateTimesWithinTolerance() {
+        ValueComparator temporal = ValueComparators.temporal(Duration.ofMillis(1));
+        Timestamp microseconds = Timestamp.valueOf("2024-01-31 10:15:30.123456");
+
+        assertTrue(temporal.isEqual("2024-01-31 10:15:30.123", microseconds));
+        assertTrue(temporal.isEqual("2024-01-31T10:15:30.1235", "2024-01-31 10:15:30.123"));
+        assertFalse(temporal.isEqual("2024-01-31 10:15:30.125", microseconds));
+    }
+}
@@ -0,0 +1,70 @@
+package com.powertester.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+class ConnectionAdmissionTest {
+    @Test
+    void aTestNeedingMoreConnectionsIsNotOvertakenByALaterTest() throws InterruptedException {
+        ConnectionAdmission admission = new ConnectionAdmission(2);
+        int held = admission.acquire(1);
+        List<String> admitted = Collections.synchronizedList(new ArrayList<>());
+
+        // The test needing 2 connections queues, then a test needing the 1 free connection arrives
+        Thread twoConnections = admitInBackground(admission, 2, "two connections", admitted);
+        awaitQueued(twoConnections);
+        Thread oneConnection = admitInBackground(admission, 1, "one connection", admitted);
+        awaitQueued(oneConnection);
+        assertEquals(List.of(), admitted);
+
+        admission.release(held);
+        twoConnections.join(5000);
+        oneConnection.join(5000);
+        assertEquals(List.of("two connections", "one connection"), admitted);
+    }
+
+    @Test
+    void tryAcquireUpToTakesOnlyFreeConnections() throws InterruptedException {
+        ConnectionAdmission admission = new ConnectionAdmission(4);
+        admission.acquire(1);
+
+        assertEquals(3, admission.tryAcquireUpTo(5));
+        assertEquals(4, admission.getHeldPermits());
+        assertEquals(0, admission.tryAcquireUpTo(1));
+
+        admission.release(4);
+        assertEquals(0, admission.getHeldPermits());
+        assertEquals(4, admission.getAvailablePermits());
+    }
+
+    private static Thread admitInBackground(ConnectionAdmission admission, int connections, String name,
+            List<String> admitted) {
+        Thread thread = new Thread(() -> {
+            try {
+                int permits = admission.acquire(connections);
+                admitted.add(name);
+                admission.release(permits);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueued(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING) {
+            if (!thread.isAlive() || System.currentTimeMillis() > deadline) {
+                fail(thread.getName() + " was admitted without waiting in line (state " + thread.getState() + ")");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -11,18 +11,22 @@ import java.util.Map;
 import java.util.Set;
 import lombok.extern.slf4j.Slf4j;
 
+import com.powertester.extensions.DatabaseConnections;
+import com.powertester.extensions.IsolatedSchema;
 import com.powertester.extensions.TableCompareExtension;
 import com.powertester.utils.CsvUtils;
 
 @Slf4j
+@IsolatedSchema
+@DatabaseConnections
 class DBConnectionFailingTest {
     private static final DBConnection db = DBConnection.getInstance();
 
     @BeforeAll
     static void createTables() {
-        // Seed input.sql for table creation and data insertion.
+        // Seed input.sql for table creation and data insertion (once per test run, later loads restore a snapshot).
         String sqlFilePath = "src/test/resources/data/db-connection-failing-test/input.sql";
-        db.updateFromFile(sqlFilePath);
+        FixtureManager.getInstance().load(sqlFilePath);
     }
 
     @Test
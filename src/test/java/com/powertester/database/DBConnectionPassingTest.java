@@ -3,27 +3,47 @@ package com.powertester.database;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.RepetitionInfo;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
 
+import com.powertester.compare.IncrementalCompare;
+import com.powertester.compare.Sampling;
+import com.powertester.compare.SpillingRowStore;
+import com.powertester.compare.ValueComparator;
+import com.powertester.compare.ValueComparators;
+import com.powertester.extensions.DatabaseConnections;
+import com.powertester.extensions.IsolatedSchema;
+import com.powertester.extensions.RollbackTransaction;
 import com.powertester.extensions.TableCompareExtension;
 import com.powertester.utils.CsvUtils;
 
 @Slf4j
+@IsolatedSchema
+@DatabaseConnections
 class DBConnectionPassingTest {
     private static final DBConnection db = DBConnection.getInstance();
 
     @BeforeAll
     static void createTables() {
-        // Read and execute each SQL statement from input.sql
+        // Seed input.sql (runs once per test run, later loads restore a snapshot)
         String sqlFilePath = "src/test/resources/data/db-connection-passing-test/input.sql";
-        db.updateFromFile(sqlFilePath);
+        FixtureManager.getInstance().load(sqlFilePath);
     }
 
     // For a typical ETL scenario. Where input data is transformed and loaded into target system.
@@ -48,19 +68,266 @@ class DBConnectionPassingTest {
         TableCompareExtension.captureRows(expectedCustomers, actualCustomers);
     }
 
+    // Same as above, but actual values keep their column type. CSV text "30" and INT 30 are compared by value.
+    @Test
+    void compareTypedOutputOfSQLStatementWithAExpectedCSVFile() throws java.io.IOException {
+        // Assert: Get input and output data to compare
+        String expectedCSVFilePath = "src/test/resources/data/db-connection-passing-test/expected.csv";
+        List<Map<String, String>> expectedCustomers = CsvUtils.convertCsvToListOfMap(expectedCSVFilePath);
+
+        String outputSQLFilePath = "src/test/resources/data/db-connection-passing-test/output.sql";
+        List<Map<String, Object>> actualCustomers = db.queryTypedFromFile(outputSQLFilePath);
+
+        // Completeness check: Assert that both input and output are of same size.
+        assertEquals(expectedCustomers.size(), actualCustomers.size());
+
+        // Correctness check: Assert that both input and output has same data.
+        TableCompareExtension.captureRows(expectedCustomers, actualCustomers);
+    }
+
+    // Typed values within a tolerance: 30 vs DECIMAL 30.00 and 12.504 vs 12.50 (cents), and CSV timestamps
+    // in milliseconds vs TIMESTAMP(6) in microseconds (1 ms).
+    @Test
+    void compareTypedOutputOfSQLStatementWithAExpectedCSVFileWithinTolerances() throws java.io.IOException {
+        // Assert: Get input and output data to compare
+        String expectedCSVFilePath = "src/test/resources/data/db-connection-passing-test/expected-payments.csv";
+        List<Map<String, String>> expectedPayments = CsvUtils.convertCsvToListOfMap(expectedCSVFilePath);
+
+        String outputSQLFilePath = "src/test/resources/data/db-connection-passing-test/output-payments.sql";
+        List<Map<String, Object>> actualPayments = db.queryTypedFromFile(outputSQLFilePath);
+
+        // Completeness check: Assert that both input and output are of same size.
+        assertEquals(expectedPayments.size(), actualPayments.size());
+
+        // The tolerances matter: without them row 2 differs, and a bigger difference exceeds them.
+        ValueComparator amountComparator = ValueComparators.numeric(new BigDecimal("0.01"));
+        ValueComparator paidAtComparator = ValueComparators.temporal(Duration.ofMillis(1));
+        Map<String, Object> secondPayment = actualPayments.get(1);
+        assertFalse(ValueComparators.defaultComparator().isEqual("12.504", secondPayment.get("AMOUNT")));
+        assertFalse(ValueComparators.defaultComparator().isEqual("2024-02-01 08:00:00", secondPayment.get("PAID_AT")));
+        assertFalse(amountComparator.isEqual("12.52", secondPayment.get("AMOUNT")));
+        assertFalse(paidAtComparator.isEqual("2024-02-01 08:00:00.002", secondPayment.get("PAID_AT")));
+
+        // Correctness check: Assert that both input and output has same data, within the tolerance per column.
+        TableCompareExtension.captureRows(expectedPayments, actualPayments, Set.of(),
+                Map.of("AMOUNT", amountComparator, "PAID_AT", paidAtComparator));
+    }
+
+    // Ignored fields are left out of the SELECT and the CSV read, so they are never fetched nor compared.
+    @Test
+    void compareOutputOfSQLStatementWithAExpectedCSVFileForSelectedFieldsOnly() throws java.io.IOException {
+        Projection projection = Projection.excluding("AGE", "GENDER");
+
+        // Assert: Get input and output data to compare
+        String expectedCSVFilePath = "src/test/resources/data/db-connection-passing-test/expected.csv";
+        List<Map<String, String>> expectedCustomers = CsvUtils.convertCsvToListOfMap(expectedCSVFilePath, projection);
+
+        String outputSQLFilePath = "src/test/resources/data/db-connection-passing-test/output.sql";
+        List<Map<String, String>> actualCustomers = db.queryFromFile(outputSQLFilePath, projection);
+
+        // Completeness check: Assert that both input and output are of same size (and columns).
+        assertEquals(expectedCustomers.size(), actualCustomers.size());
+        assertEquals(Set.of("ID", "FIRST_NAME", "LAST_NAME"), actualCustomers.get(0).keySet());
+
+        // Correctness check: Assert that both input and output has same data.
+        TableCompareExtension.captureRows(expectedCustomers, actualCustomers, projection);
+    }
+
+    // For smoke tests on very large tables. Only a deterministic sample of keys is fetched and compared.
+    @Test
+    void compareSampleOfOutputOfTwoSQLStatements() {
+        Sampling sampling = Sampling.of(0.1, 42);
+
+        // Assert: Get the same sample of keys (about 100 of the 1000 orders) from input and output
+        List<Map<String, String>> sourceOrders = db.querySample("SELECT * FROM orders_source;", "ID", sampling);
+        List<Map<String, String>> targetOrders = db.querySample("SELECT * FROM orders_target;", "ID", sampling);
+
+        // Completeness check: Assert that both samples are of same size (and the sample is not a handful of rows).
+        assertEquals(sourceOrders.size(), targetOrders.size());
+        assertTrue(sourceOrders.size() > 50 && sourceOrders.size() < 150, "Sample size: " + sourceOrders.size());
+
+        // Correctness check: Assert that both samples have same data.
+        TableCompareExtension.captureSampledRows(sourceOrders, targetOrders, "ID", sampling);
+    }
+
+    @Test
+    void compareClientSideSampleOfOutputOfTwoSQLStatements() {
+        // Assert: the sample is taken while reading the rows, in whatever order the database returns them
+        Sampling sampling = Sampling.of(0.1, 42).clientSide();
+        List<Map<String, String>> sourceOrders = db.querySample("SELECT * FROM orders_source;", "ID", sampling);
+        List<Map<String, String>> targetOrders =
+                db.querySample("SELECT * FROM orders_target ORDER BY id DESC;", "ID", sampling);
+
+        assertEquals(sourceOrders.size(), targetOrders.size());
+        TableCompareExtension.captureSampledRows(sourceOrders, targetOrders, "ID", sampling);
+    }
+
+    @Test
+    void compareSampleOfOutputOfTwoSQLStatementsWithAKeyMissingOnOneSide() {
+        Sampling sampling = Sampling.of(0.1, 42);
+        List<Map<String, String>> sourceOrders = db.querySample("SELECT * FROM orders_source;", "ID", sampling);
+        String missingId = sourceOrders.get(0).get("ID");
+        List<Map<String, String>> targetOrders =
+                db.querySample("SELECT * FROM orders_target WHERE id <> ?;", "ID", sampling, missingId);
+
+        // Rows are matched on key: the missing row differs in its 3 fields, all rows after it still match
+        TableCompareExtension.expectDiffs(3);
+        TableCompareExtension.captureSampledRows(sourceOrders, targetOrders, "ID", sampling);
+    }
+
+    // For nightly ETL loads. Only rows beyond the last verified watermark (here: ID) are fetched and compared.
+    @Test
+    @RollbackTransaction // the rows that arrive after the previous run are removed afterwards
+    void compareRowsChangedSinceLastRunOfTwoSQLStatements(@TempDir Path stateDirectory) {
+        Path stateFile = stateDirectory.resolve("watermarks.properties");
+
+        // Arrange: a previous run had no watermark yet, compared all rows and verified them
+        IncrementalCompare previousRun = IncrementalCompare.of("emp-vs-customer", "ID", stateFile);
+        assertTrue(previousRun.isFullCompare());
+        assertEquals(3, db.queryIncremental("SELECT * FROM emp;", previousRun).size());
+        previousRun.markVerified();
+
+        // Act: 2 rows arrive in input and output after the previous run
+        db.update("INSERT INTO emp (id, first_name, last_name, age, gender) VALUES (4, 'Emily', 'Clark', 22, 'Female');");
+        db.update("INSERT INTO emp (id, first_name, last_name, age, gender) VALUES (5, 'Omar', 'Ali', 41, 'Male');");
+        db.update("INSERT INTO customer (id, first_name, last_name, age, gender) VALUES (4, 'Emily', 'Clark', 22, 'Female');");
+        db.update("INSERT INTO customer (id, first_name, last_name, age, gender) VALUES (5, 'Omar', 'Ali', 41, 'Male');");
+
+        // Assert: Get the rows in the same watermark window (3, 5] from input and output
+        IncrementalCompare incremental = IncrementalCompare.of("emp-vs-customer", "ID", stateFile);
+        List<Map<String, String>> empRows = db.queryIncremental("SELECT * FROM emp;", incremental);
+        List<Map<String, String>> customerRows = db.queryIncremental("SELECT * FROM customer;", incremental);
+
+        // Completeness check: exactly the rows beyond the watermark, on both sides.
+        assertEquals(Set.of("4", "5"), empRows.stream().map(row -> row.get("ID")).collect(Collectors.toSet()));
+        assertEquals(empRows.size(), customerRows.size());
+
+        // Correctness check: Assert that both input and output has same data.
+        TableCompareExtension.captureIncrementalRows(empRows, customerRows, "ID", incremental);
+    }
+
+    @Test
+    void compareAllRowsOfTwoSQLStatementsWhenAFullCompareIsForced(@TempDir Path stateDirectory) {
+        Path stateFile = stateDirectory.resolve("watermarks.properties");
+
+        // Arrange: a previous run verified all rows, so the next incremental window would be empty
+        IncrementalCompare previousRun = IncrementalCompare.of("emp-vs-customer", "ID", stateFile);
+        db.queryIncremental("SELECT * FROM emp;", previousRun);
+        previousRun.markVerified();
+        assertEquals("3", IncrementalCompare.of("emp-vs-customer", "ID", stateFile).getFromWatermark());
+
+        // Assert: a forced full compare ignores the stored watermark
+        IncrementalCompare incremental = IncrementalCompare.of("emp-vs-customer", "ID", stateFile).forceFull();
+        List<Map<String, String>> empRows = db.queryIncremental("SELECT * FROM emp;", incremental);
+        List<Map<String, String>> customerRows = db.queryIncremental("SELECT * FROM customer;", incremental);
+
+        assertTrue(incremental.isFullCompare());
+        assertEquals(3, empRows.size());
+        assertEquals(empRows.size(), customerRows.size());
+        TableCompareExtension.captureIncrementalRows(empRows, customerRows, "ID", incremental);
+    }
+
+    // Data changes of a test are rolled back after it, so every repetition starts from the same 3 rows.
+    @RepeatedTest(5)
+    @RollbackTransaction
+    void insertIntoSourceTableIsRolledBackAfterEachRepetition(RepetitionInfo repetitionInfo) {
+        // Act: insert a row (visible to this test only, until it is rolled back)
+        db.update("INSERT INTO emp (id, first_name, last_name, age, gender) VALUES ("
+                + (100 + repetitionInfo.getCurrentRepetition()) + ", 'Temp', 'Row', 50, 'Male');");
+
+        // Assert: this test sees its own row on top of the seeded rows
+        assertEquals(4, db.query("SELECT * FROM emp;").size());
+    }
+
+    // For tables larger than the heap. Rows are matched on key (in any order) and spilled to disk beyond 2 rows per side.
+    @Test
+    void compareOutputOfSQLStatementWithAExpectedCSVFileByKey() throws java.io.IOException {
+        SpillingRowStore expectedCustomers = new SpillingRowStore("ID", 2, Paths.get("target", "row-store"));
+        SpillingRowStore actualCustomers = new SpillingRowStore("ID", 2, Paths.get("target", "row-store"));
+
+        // Assert: Get input and output data to compare (output in reverse order of the expected file)
+        String expectedCSVFilePath = "src/test/resources/data/db-connection-passing-test/expected.csv";
+        CsvUtils.readCsvIntoStore(expectedCSVFilePath, expectedCustomers);
+        db.queryIntoStore("SELECT * FROM customer ORDER BY id DESC;", actualCustomers);
+
+        // Completeness check: Assert that both input and output are of same size.
+        assertEquals(expectedCustomers.size(), actualCustomers.size());
+
+        // Correctness check: Assert that both input and output has same data.
+        TableCompareExtension.captureRowsByKey(expectedCustomers, actualCustomers);
+    }
+
+    // Unsorted expected file vs. database output: the file is merge sorted on disk, the output is read from a key ordered cursor.
+    @Test
+    void compareUnsortedCSVFileWithKeyOrderedOutputOfSQLStatement() throws java.io.IOException {
+        // Assert: Get input and output data to compare (2 rows per chunk, so that the file is sorted in several runs)
+        String expectedCSVFilePath = "src/test/resources/data/db-connection-passing-test/expected-unsorted.csv";
+        SpillingRowStore expectedCustomers = new SpillingRowStore("ID", 2, Paths.get("target", "row-store"));
+        CsvUtils.readCsvIntoStore(expectedCSVFilePath, expectedCustomers);
+        KeyOrderedCursor actualCustomers = db.openKeyOrderedCursor("SELECT * FROM customer;", "ID");
+
+        // Completeness check: Assert that both input and output are of same size.
+        assertEquals(expectedCustomers.size(), db.countRows("SELECT * FROM customer;"));
+
+        // Correctness check: Assert that both input and output has same data.
+        TableCompareExtension.captureRowsByKey(expectedCustomers, actualCustomers);
+    }
+
+    @Test
+    void stopComparingOutputOfTwoSQLStatementsAtMaxDiffs() {
+        // Assert: the age differs in every row, so without a limit there would be 3 differences
+        List<Map<String, String>> expectedAges = db.query("SELECT id, age FROM emp ORDER BY id;");
+        List<Map<String, String>> actualAges = db.query("SELECT id, age + 1 AS age FROM customer ORDER BY id;");
+
+        TableCompareExtension.limitDiffs(2);
+        TableCompareExtension.expectDiffs(2);
+        TableCompareExtension.captureRows(expectedAges, actualAges);
+    }
+
+    @Test
+    @DatabaseConnections(2) // both cursors hold a connection until the compare is done
+    void stopComparingKeyOrderedOutputOfTwoSQLStatementsAtMaxDiffs() {
+        // Assert: the compare stops at the first difference, and cancels both cursors before closing them
+        KeyOrderedCursor expectedAges = db.openKeyOrderedCursor("SELECT id, age FROM emp;", "ID");
+        KeyOrderedCursor actualAges = db.openKeyOrderedCursor("SELECT id, age + 1 AS age FROM customer;", "ID");
+
+        TableCompareExtension.limitDiffs(1);
+        TableCompareExtension.expectDiffs(1);
+        TableCompareExtension.captureRowsByKey(expectedAges, actualAges);
+    }
+
+    @Test
+    void runDataOnlyScriptsInScriptOrderForTablesWithForeignKeys() {
+        // Arrange: tables with a foreign key created by an earlier script, and a table without one
+        db.update("CREATE TABLE fk_parent (id INT PRIMARY KEY)");
+        db.update("CREATE TABLE fk_child (id INT PRIMARY KEY, parent_id INT REFERENCES fk_parent (id))");
+        try {
+            // Assert: a data only script for either side of the foreign key runs in script order
+            assertTrue(db.hasForeignKeys(ScriptPlan.changedTablesOf(List.of("INSERT INTO PUBLIC.fk_child VALUES (1, 1)"))));
+            assertTrue(db.hasForeignKeys(ScriptPlan.changedTablesOf(List.of("DELETE FROM \"FK_PARENT\""))));
+            assertFalse(db.hasForeignKeys(ScriptPlan.changedTablesOf(List.of("INSERT INTO emp VALUES (9)"))));
+        } finally {
+            db.update("DROP TABLE fk_child");
+            db.update("DROP TABLE fk_parent");
+        }
+    }
+
     // For a typical EL scenario. Where input data is extracted and loaded (1:1) from source system(s) to target system.
     @RepeatedTest(500) // Run this test multiple times to see connection pool stats after each run.
+    @DatabaseConnections(2) // both row counts run at the same time
     void compareOutputOfTwoSQLStatements() {
         // Arrange: input (could be done at a test, class or at project level)
 
         // Act: (run the application to process input data). If the app is real time like APIs, this can be done at the test level. 
         // But if the app works as a batch and takes significant time to process data, it might also make sense to do this at the project level.
 
-        // Assert: Get input and output data to compare
+        // Assert: Completeness check first (row counts of both sides, in parallel), so that no rows are fetched
+        // if the counts already differ.
+        db.assertSameRowCount("SELECT * FROM emp;", "SELECT * FROM customer;");
+
+        // Get input and output data to compare
         List<Map<String, String>> empRows = db.query("SELECT * FROM emp;");
         List<Map<String, String>> customerRows = db.query("SELECT * FROM customer;");
-
-        // Completeness check: Assert that both input and output are of same size.
         assertEquals(empRows.size(), customerRows.size());
 
         // Correctness check: Assert that both input and output has same data.
@@ -71,5 +338,8 @@ class DBConnectionPassingTest {
     static void tearDownAll() {
         db.update("DROP TABLE emp;");
         db.update("DROP TABLE customer;");
+        db.update("DROP TABLE payment;");
+        db.update("DROP TABLE orders_source;");
+        db.update("DROP TABLE orders_target;");
     }
 }
@@ -0,0 +1,89 @@
+package com.powertester.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import com.powertester.config.TestConfig;
+import com.powertester.extensions.DatabaseConnections;
+
+@DatabaseConnections
+class FixtureManagerTest {
+    private static final DBConnection db = DBConnection.getInstance();
+    private static final String SQL_FILE_PATH = "src/test/resources/data/fixture-manager-test/input.sql";
+    private static final String SELECT_ITEMS = "SELECT id, name, price FROM fixture_item ORDER BY id";
+
+    @Test
+    void restoreASnapshotIntoAnotherSchema() throws IOException {
+        // A fixture manager of its own, so the first load below runs the script and takes the snapshot
+        FixtureManager fixtures = new FixtureManager(db);
+
+        String previousSchema = db.useIsolatedSchema("ISO_FIXTURE_SEEDED");
+        try {
+            fixtures.load(SQL_FILE_PATH);
+        } finally {
+            db.useSchema(previousSchema);
+        }
+
+        // The second load restores the snapshot, into the schema of this load
+        List<Map<String, String>> restoredRows;
+        previousSchema = db.useIsolatedSchema("ISO_FIXTURE_RESTORED");
+        try {
+            fixtures.load(SQL_FILE_PATH);
+            restoredRows = db.query(SELECT_ITEMS);
+        } finally {
+            db.useSchema(previousSchema);
+        }
+
+        assertEquals(List.of(
+                Map.of("ID", "1", "NAME", "Pen", "PRICE", "1.50"),
+                Map.of("ID", "2", "NAME", "Ink", "PRICE", "12.00"),
+                Map.of("ID", "3", "NAME", "Paper", "PRICE", "4.25")), restoredRows);
+        assertFalse(snapshotText().contains("ISO_FIXTURE_SEEDED"), "Snapshot should not be schema qualified");
+    }
+
+    @Test
+    void restoreTheSeededStateWhenTheSameScriptIsLoadedAgain() {
+        FixtureManager fixtures = new FixtureManager(db);
+
+        String previousSchema = db.useIsolatedSchema("ISO_FIXTURE_RELOADED");
+        try {
+            fixtures.load(SQL_FILE_PATH);
+            List<Map<String, String>> seededRows = db.query(SELECT_ITEMS);
+
+            // A test changes the seeded rows, the next load (without DELETE in the script) brings them back
+            db.update("DELETE FROM fixture_item WHERE id = 1");
+            db.update("UPDATE fixture_item SET price = 0 WHERE id = 2");
+            db.update("INSERT INTO fixture_item (id, name, price) VALUES (4, 'Stapler', 9.99)");
+            fixtures.load(SQL_FILE_PATH);
+
+            assertEquals(seededRows, db.query(SELECT_ITEMS));
+            assertEquals(3, seededRows.size());
+        } finally {
+            db.useSchema(previousSchema);
+        }
+    }
+
+    private static String snapshotText() throws IOException {
+        Path snapshotDirectory = Path.of(TestConfig.getInstance().getConfig().getString("FIXTURE_SNAPSHOT_DIR"));
+        StringBuilder text = new StringBuilder();
+        try (var snapshots = Files.newDirectoryStream(snapshotDirectory, "*.sql.gz")) {
+            for (Path snapshot : snapshots) {
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(snapshot))) {
+                    text.append(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return text.toString();
+    }
+}
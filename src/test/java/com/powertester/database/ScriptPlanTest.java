@@ -0,0 +1,96 @@
+package com.powertester.database;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+class ScriptPlanTest {
+
+    @Test
+    void groupChangesPerTableInScriptOrder() {
+        List<String> statements = List.of(
+                "INSERT INTO item VALUES (1)",
+                "INSERT INTO customer VALUES (1)",
+                "UPDATE item SET name = 'Pen' WHERE id = 1",
+                "DELETE FROM customer WHERE id = 1");
+
+        assertEquals(List.of(List.of(
+                List.of("INSERT INTO item VALUES (1)", "UPDATE item SET name = 'Pen' WHERE id = 1"),
+                List.of("INSERT INTO customer VALUES (1)", "DELETE FROM customer WHERE id = 1"))),
+                ScriptPlan.stepsOf(statements));
+    }
+
+    @Test
+    void ddlIsABarrierBetweenSteps() {
+        List<String> statements = List.of(
+                "CREATE TABLE item (id INT)",
+                "INSERT INTO item VALUES (1)",
+                "INSERT INTO customer VALUES (1)",
+                "CREATE INDEX item_id ON item (id)",
+                "INSERT INTO item VALUES (2)");
+
+        assertEquals(List.of(
+                List.of(List.of("CREATE TABLE item (id INT)")),
+                List.of(List.of("INSERT INTO item VALUES (1)"), List.of("INSERT INTO customer VALUES (1)")),
+                List.of(List.of("CREATE INDEX item_id ON item (id)")),
+                List.of(List.of("INSERT INTO item VALUES (2)"))),
+                ScriptPlan.stepsOf(statements));
+    }
+
+    @Test
+    void aStatementReadingOtherTablesRunsAlone() {
+        List<String> statements = List.of(
+                "INSERT INTO item VALUES (1)",
+                "INSERT INTO item_copy SELECT * FROM item",
+                "UPDATE customer SET item_count = (SELECT COUNT(*) FROM item)");
+
+        assertEquals(List.of(
+                List.of(List.of("INSERT INTO item VALUES (1)")),
+                List.of(List.of("INSERT INTO item_copy SELECT * FROM item")),
+                List.of(List.of("UPDATE customer SET item_count = (SELECT COUNT(*) FROM item)"))),
+                ScriptPlan.stepsOf(statements));
+    }
+
+    @Test
+    void tableNamesAreMatchedAsTheDatabaseWould() {
+        // Unquoted names are the same table in any case, quoted names only when spelled the same
+        List<String> statements = List.of(
+                "INSERT INTO item VALUES (1)",
+                "insert into ITEM values (2)",
+                "INSERT INTO \"ITEM\" VALUES (3)",
+                "INSERT INTO \"item\" VALUES (4)");
+
+        assertEquals(List.of(List.of(
+                List.of("INSERT INTO item VALUES (1)", "insert into ITEM values (2)", "INSERT INTO \"ITEM\" VALUES (3)"),
+                List.of("INSERT INTO \"item\" VALUES (4)"))),
+                ScriptPlan.stepsOf(statements));
+    }
+
+    @Test
+    void schemaQualifiedNamesAreTheSameTable() {
+        // A DELETE and an INSERT on one table may not race because the script spells the table differently
+        List<String> statements = List.of(
+                "DELETE FROM PUBLIC.emp",
+                "INSERT INTO emp VALUES (1)",
+                "INSERT INTO \"PUBLIC\".\"EMP\" VALUES (2)");
+
+        assertEquals(List.of(List.of(statements)), ScriptPlan.stepsOf(statements));
+        assertEquals(Set.of("EMP"), ScriptPlan.changedTablesOf(statements));
+        assertEquals("my.table", ScriptPlan.tableOf("\"PUBLIC\".\"my.table\""));
+    }
+
+    @Test
+    void detectForeignKeys() {
+        assertTrue(ScriptPlan.hasForeignKeys(List.of(
+                "CREATE TABLE item (id INT PRIMARY KEY)",
+                "CREATE TABLE order_line (item_id INT references item (id))")));
+        assertFalse(ScriptPlan.hasForeignKeys(List.of(
+                "CREATE TABLE item (id INT PRIMARY KEY)",
+                "INSERT INTO item VALUES (1)")));
+    }
+}
@@ -0,0 +1,108 @@
+package com.powertester.database;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.typesafe.config.Config;
+import com.zaxxer.hikari.HikariDataSource;
+
+import com.powertester.config.TestConfig;
+
+class SlowQueryTest {
+    private static final Config CONFIG = TestConfig.getInstance().getConfig();
+    private static HikariDataSource dataSource;
+    private static DBConnection db;
+
+    @BeforeAll
+    static void createConnection() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(CONFIG.getString("DB_URL"));
+        dataSource.setUsername(CONFIG.getString("DB_USER"));
+        dataSource.setPassword(CONFIG.getString("DB_PASSWORD"));
+        dataSource.setMaximumPoolSize(2);
+        dataSource.setPoolName("SlowQueryTest");
+        // A threshold the statements below pass, and the shortest timeout JDBC has
+        db = new DBConnection(dataSource, 50, 1);
+        db.update("CREATE ALIAS IF NOT EXISTS SLEEP_MILLIS FOR \"java.lang.Thread.sleep(long)\"");
+    }
+
+    @Test
+    void recordASlowQueryWithItsBindValuesAndPlan() {
+        db.takeSlowQueries();
+
+        db.query("SELECT X AS ID, SLEEP_MILLIS(?) AS SLEPT FROM SYSTEM_RANGE(1, 2)", "60");
+
+        List<SlowQuery> slowQueries = db.takeSlowQueries();
+        assertEquals(1, slowQueries.size());
+        SlowQuery slowQuery = slowQueries.get(0);
+        assertTrue(slowQuery.getSql().contains("SLEEP_MILLIS(?)"), slowQuery.getSql());
+        assertEquals(List.of("60"), slowQuery.getBindValues());
+        assertTrue(slowQuery.getTotalMillis() >= 50, slowQuery.toString());
+        assertNotNull(slowQuery.getPlan());
+        assertTrue(slowQuery.getPlan().contains("SYSTEM_RANGE"), slowQuery.getPlan());
+        assertNull(slowQuery.getError());
+    }
+
+    @Test
+    void recordASlowQueryWithANullBindValue() {
+        db.takeSlowQueries();
+
+        // A slow query that succeeds still succeeds, whatever its bind values
+        List<Map<String, String>> rows = db.query(
+                "SELECT X AS ID, SLEEP_MILLIS(60) AS SLEPT FROM SYSTEM_RANGE(1, 1) WHERE CAST(? AS VARCHAR) IS NULL",
+                (String) null);
+
+        assertEquals(1, rows.size());
+        List<SlowQuery> slowQueries = db.takeSlowQueries();
+        assertEquals(1, slowQueries.size());
+        assertEquals(Collections.singletonList(null), slowQueries.get(0).getBindValues());
+        assertTrue(slowQueries.get(0).toReport().contains("Bind values: [null]"), slowQueries.get(0).toReport());
+    }
+
+    @Test
+    void recordAQueryThatTimedOut() {
+        db.takeSlowQueries();
+
+        // Counting 10^10 rows does not finish within the timeout of 1 second
+        assertThrows(IllegalStateException.class,
+                () -> db.query("SELECT COUNT(*) AS PAIRS FROM SYSTEM_RANGE(1, 100000) a, SYSTEM_RANGE(1, 100000) b"
+                        + " WHERE a.X > ?", "0"));
+
+        List<SlowQuery> slowQueries = db.takeSlowQueries();
+        assertEquals(1, slowQueries.size());
+        SlowQuery slowQuery = slowQueries.get(0);
+        assertEquals(List.of("0"), slowQuery.getBindValues());
+        assertTrue(slowQuery.getPlan().contains("SYSTEM_RANGE"), slowQuery.getPlan());
+        assertNotNull(slowQuery.getError());
+        assertTrue(slowQuery.toReport().contains("Failed: "), slowQuery.toReport());
+    }
+
+    @Test
+    void recordASlowStatementOfASeedScript() {
+        db.takeSlowQueries();
+
+        db.updateFromFile("src/test/resources/data/slow-query-test/input.sql");
+
+        List<SlowQuery> slowQueries = db.takeSlowQueries();
+        assertEquals(1, slowQueries.size());
+        assertTrue(slowQueries.get(0).getSql().startsWith("INSERT INTO slow_item"), slowQueries.get(0).getSql());
+    }
+
+    @AfterAll
+    static void tearDownAll() {
+        db.update("DROP TABLE IF EXISTS slow_item");
+        db.update("DROP ALIAS IF EXISTS SLEEP_MILLIS");
+        db.closeConnectionPool();
+    }
+}
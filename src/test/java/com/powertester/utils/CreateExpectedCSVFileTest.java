@@ -12,18 +12,23 @@ import java.util.Map;
 import lombok.extern.slf4j.Slf4j;
 
 import com.powertester.database.DBConnection;
+import com.powertester.database.FixtureManager;
 
+import com.powertester.extensions.DatabaseConnections;
+import com.powertester.extensions.IsolatedSchema;
 import com.powertester.extensions.TableCompareExtension;
 
 @Slf4j
+@IsolatedSchema
+@DatabaseConnections
 class CreateExpectedCSVFileTest {
     private static final DBConnection db = DBConnection.getInstance();
 
     @BeforeAll
     static void createTables() {
-        // Read and execute each SQL statement from input.sql
+        // Seed input.sql (runs once per test run, later loads restore a snapshot)
         String sqlFilePath = "src/test/resources/data/create-expected-csv-file-test/input.sql";
-        db.updateFromFile(sqlFilePath);
+        FixtureManager.getInstance().load(sqlFilePath);
     }
 
     @Test
@@ -4,10 +4,6 @@
 CREATE TABLE source (id INT PRIMARY KEY, first_name VARCHAR(255), last_name VARCHAR(255), age INT, gender VARCHAR(10));
 CREATE TABLE target (id INT PRIMARY KEY, first_name VARCHAR(255), last_name VARCHAR(255), age INT, gender VARCHAR(10));
 
--- Clean tables before each test to avoid PK violation in repeated tests
-DELETE FROM source;
-DELETE FROM target;
-
 -- Insert sample data into source table
 INSERT INTO source (id, first_name, last_name, age, gender) VALUES (1, 'John', 'Doe', 30, 'Male');
 INSERT INTO source (id, first_name, last_name, age, gender) VALUES (2, 'Jane', 'Smith', 25, 'Female');
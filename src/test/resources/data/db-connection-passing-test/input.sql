@@ -4,10 +4,6 @@
 CREATE TABLE emp (id INT PRIMARY KEY, first_name VARCHAR(255), last_name VARCHAR(255), age INT, gender VARCHAR(10));
 CREATE TABLE customer (id INT PRIMARY KEY, first_name VARCHAR(255), last_name VARCHAR(255), age INT, gender VARCHAR(10));
 
--- Clean tables before each test to avoid PK violation in repeated tests
-DELETE FROM emp;
-DELETE FROM customer;
-
 -- Insert 3 records in source table 'emp'
 INSERT INTO emp (id, first_name, last_name, age, gender) VALUES (1, 'John', 'Doe', 30, 'Male');
 INSERT INTO emp (id, first_name, last_name, age, gender) VALUES (2, 'Jane', 'Smith', 25, 'Female');
@@ -16,4 +12,14 @@ INSERT INTO emp (id, first_name, last_name, age, gender) VALUES (3, 'Alex', 'Bro
 -- Insert same 3 records in target table 'customer'
 INSERT INTO customer (id, first_name, last_name, age, gender) VALUES (1, 'John', 'Doe', 30, 'Male');
 INSERT INTO customer (id, first_name, last_name, age, gender) VALUES (2, 'Jane', 'Smith', 25, 'Female');
-INSERT INTO customer (id, first_name, last_name, age, gender) VALUES (3, 'Alex', 'Brown', 28, 'Male');
\ No newline at end of file
+INSERT INTO customer (id, first_name, last_name, age, gender) VALUES (3, 'Alex', 'Brown', 28, 'Male');
+-- Payments with typed columns (decimal amount, timestamp in microseconds) for compares with tolerances
+CREATE TABLE payment (id INT PRIMARY KEY, amount DECIMAL(10,2), paid_at TIMESTAMP(6));
+INSERT INTO payment (id, amount, paid_at) VALUES (1, 30.00, TIMESTAMP '2024-01-31 10:15:30.123456');
+INSERT INTO payment (id, amount, paid_at) VALUES (2, 12.50, TIMESTAMP '2024-02-01 08:00:00.000999');
+INSERT INTO payment (id, amount, paid_at) VALUES (3, 99.99, TIMESTAMP '2024-02-02 23:59:59.999000');
+-- 1000 orders in source and target, for sampled compares
+CREATE TABLE orders_source (id INT PRIMARY KEY, customer_id INT, amount DECIMAL(10,2));
+INSERT INTO orders_source (id, customer_id, amount) SELECT X, MOD(X, 3) + 1, X * 1.25 FROM SYSTEM_RANGE(1, 1000);
+CREATE TABLE orders_target (id INT PRIMARY KEY, customer_id INT, amount DECIMAL(10,2));
+INSERT INTO orders_target (id, customer_id, amount) SELECT id, customer_id, amount FROM orders_source;
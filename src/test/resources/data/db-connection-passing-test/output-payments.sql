@@ -0,0 +1,3 @@
+-- All SQLs must end with a semicolon (;)
+
+SELECT * FROM payment ORDER BY id;
@@ -0,0 +1,8 @@
+-- All SQLs must end with a semicolon (;)
+
+CREATE TABLE fixture_item (id INT PRIMARY KEY, name VARCHAR(255), price DECIMAL(10,2));
+CREATE INDEX fixture_item_name ON fixture_item (name);
+
+INSERT INTO fixture_item (id, name, price) VALUES (1, 'Pen', 1.50);
+INSERT INTO fixture_item (id, name, price) VALUES (2, 'Ink', 12.00);
+INSERT INTO fixture_item (id, name, price) VALUES (3, 'Paper', 4.25);
@@ -0,0 +1,6 @@
+-- All SQLs must end with a semicolon (;)
+
+CREATE TABLE slow_item (id INT PRIMARY KEY, note VARCHAR(10));
+
+-- SLEEP_MILLIS (created by the test) makes this insert take longer than the slow query threshold of the test
+INSERT INTO slow_item (id, note) VALUES (1, CAST(SLEEP_MILLIS(100) AS VARCHAR(10)));